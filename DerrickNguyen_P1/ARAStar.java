@@ -0,0 +1,294 @@
+import java.util.Arrays;
+
+/**
+ * Anytime repairing A* (ARA*) over packed boards with a wall-clock deadline. The first iteration is a
+ * weighted A* ordered by g + w * h, which finds a solution quickly but only within a factor w of optimal.
+ * Each later iteration lowers w and repairs the previous search instead of starting over: the g values
+ * and parents found so far are kept, and only the boards still open or improved after being expanded
+ * (the inconsistent ones) are put back on the open list. Each iteration expands every board at most once.
+ *
+ * The suboptimality of the incumbent is bounded by its length over the smallest g + h among the boards
+ * left to examine, and after a finished iteration also by that iteration's w. The search stops when the
+ * bound reaches 1, or at the deadline, and returns the best solution found with its bound. A deadline
+ * that passes in the middle of an iteration still returns the best path reached so far. The deadline
+ * only applies once there is a solution, so the first iteration always runs until it finds one.
+ */
+public class ARAStar {
+    static final int SCALE = 10; // weights are kept in tenths, so priorities stay integers
+    static final double DEFAULT_WEIGHT = 3.0; // inflation of the first iteration
+    static final double WEIGHT_STEP = 0.5; // decrease of the weight between iterations
+
+    private static final int NO_PARENT = 0x1F; // reached entry for the start board: g = 0, no parent blank
+    private static final int CHECK_INTERVAL = 256; // expansions between deadline checks, and before the first
+
+    private final Heuristic heuristic;
+    private final int initialWeight; // in tenths
+    private SearchMetrics metrics;
+    private double bound;
+    private int iterations;
+
+    // open list: a binary min-heap on (key, deeper first) with lazy deletion of outdated entries
+    private long[] heapTiles = new long[1024];
+    private int[] heapKeys = new int[1024];
+    private int[] heapG = new int[1024];
+    private int[] heapH = new int[1024];
+    private int heapSize;
+
+    // boards improved after being expanded in the current iteration, with their h
+    private long[] inconsTiles = new long[256];
+    private int[] inconsH = new int[256];
+    private int inconsSize;
+
+    /**
+     * Creates a solver.
+     * @param heuristic an admissible heuristic for packed boards
+     * @param initialWeight the weight of the first iteration, at least 1
+     */
+    public ARAStar(Heuristic heuristic, double initialWeight) {
+        if (initialWeight < 1) {
+            throw new IllegalArgumentException("ARA* needs a weight of at least 1, got " + initialWeight);
+        }
+        this.heuristic = heuristic;
+        this.initialWeight = (int) Math.round(initialWeight * SCALE);
+    }
+
+    /**
+     * Returns the counters of the last call to solve(), summed over its iterations.
+     * @return the metrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the proven suboptimality of the last solution: its length is at most this many times the
+     * optimal length.
+     * @return the bound, 1 if the solution is optimal
+     */
+    public double getBound() {
+        return bound;
+    }
+
+    /**
+     * Searches until the solution is proven optimal or the time is up. The clock starts once the search is
+     * set up, and is only checked after the first solution is found. The board must be packed.
+     * @param start the initial State object
+     * @param millis the wall-clock milliseconds after which to return the best solution so far
+     * @return the blank cell after each move, starting with the initial blank, or null if none exists
+     */
+    public int[] solve(State start, long millis) {
+        Board board = start.getBoard();
+        metrics = new SearchMetrics("ARA*").start();
+        bound = Double.POSITIVE_INFINITY;
+        iterations = 0;
+        heapSize = 0;
+        inconsSize = 0;
+        // best g and parent's blank per board, as in A*; closed maps a board to the last iteration that expanded it
+        LongIntMap reached = new LongIntMap(1024);
+        LongIntMap closed = new LongIntMap(1024);
+        long goal = board.goalTiles;
+        long tiles = start.getTiles();
+        int h = heuristic.estimate(tiles);
+        metrics.evaluations++;
+        reached.put(tiles, NO_PARENT);
+        int weight = initialWeight;
+        push(tiles, weight * h, 0, h);
+        int[] best;
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+
+        while (true) {
+            int iteration = iterations + 1;
+            boolean finished = improve(board, reached, closed, iteration, weight, deadline);
+            if (finished) {
+                iterations = iteration;
+            }
+            if (!reached.containsKey(goal)) {
+                metrics.finish(-1);
+                return null; // the open list ran dry without reaching the goal
+            }
+            best = path(reached, goal);
+            int length = best.length - 1;
+            // every optimal path passes through a board left to examine with its optimal g, so the smallest
+            // g + h among them is a lower bound on the optimum at any time
+            int lowest = length;
+            for (int i = 0; i < heapSize; i++) {
+                lowest = Math.min(lowest, heapG[i] + heapH[i]);
+            }
+            for (int i = 0; i < inconsSize; i++) {
+                lowest = Math.min(lowest, (reached.get(inconsTiles[i], 0) >>> 5) + inconsH[i]);
+            }
+            bound = (double) length / Math.max(lowest, 1);
+            if (finished) {
+                bound = Math.min(bound, (double) weight / SCALE);
+            }
+            if (length == 0 || bound <= 1) {
+                bound = 1;
+                break;
+            }
+            if (!finished || System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            // move the inconsistent boards back to the open list and reorder it for a lower weight
+            for (int i = 0; i < inconsSize; i++) {
+                long next = inconsTiles[i];
+                push(next, 0, reached.get(next, 0) >>> 5, inconsH[i]);
+            }
+            inconsSize = 0;
+            weight = Math.max(SCALE, weight - (int) Math.round(WEIGHT_STEP * SCALE));
+            for (int i = 0; i < heapSize; i++) {
+                heapKeys[i] = heapG[i] * SCALE + weight * heapH[i];
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+        metrics.finish(best.length - 1);
+        return best;
+    }
+
+    /**
+     * Runs one iteration: expands boards in key order until none has a smaller key than the goal. The
+     * deadline is checked every CHECK_INTERVAL expansions, once the goal has been reached.
+     * @return false if the deadline passed first
+     */
+    private boolean improve(Board board, LongIntMap reached, LongIntMap closed, int iteration, int weight,
+            long deadline) {
+        long goal = board.goalTiles;
+        while (heapSize > 0) {
+            int goalG = reached.get(goal, Integer.MAX_VALUE) >>> 5;
+            if (goalG != Integer.MAX_VALUE >>> 5 && (long) goalG * SCALE <= heapKeys[0]) {
+                return true;
+            }
+            long curr = heapTiles[0];
+            int g = heapG[0];
+            int currH = heapH[0];
+            pop();
+            if (g > reached.get(curr, 0) >>> 5 || closed.get(curr, 0) == iteration) {
+                continue; // outdated entry, or already expanded in this iteration
+            }
+            if (metrics.expanded % CHECK_INTERVAL == 0 && metrics.expanded > 0 && goalG != Integer.MAX_VALUE >>> 5
+                    && System.nanoTime() - deadline >= 0) {
+                push(curr, g * SCALE + weight * currH, g, currH);
+                return false;
+            }
+            closed.put(curr, iteration);
+            metrics.expanded++;
+            int blank = State.blankOf(curr);
+            for (int target : board.successorCells[blank]) {
+                long next = State.slide(curr, blank, target);
+                int nextG = g + 1;
+                metrics.generated++;
+                if (nextG >= reached.get(next, Integer.MAX_VALUE) >>> 5) {
+                    metrics.duplicates++;
+                    continue;
+                }
+                reached.put(next, nextG << 5 | blank);
+                int h = heuristic.update(currH, next, State.tileAt(curr, target), target, blank);
+                metrics.evaluations++;
+                if (closed.get(next, 0) == iteration) {
+                    addIncons(next, h);
+                } else {
+                    push(next, nextG * SCALE + weight * h, nextG, h);
+                }
+            }
+            metrics.open(heapSize);
+            metrics.closed(reached.size());
+        }
+        return true;
+    }
+
+    private int[] path(LongIntMap reached, long tiles) {
+        int[] res = new int[(reached.get(tiles, 0) >>> 5) + 1];
+        int n = 0;
+        int blank = State.blankOf(tiles);
+        res[n++] = blank;
+        // parents always have a smaller g than their children, so the walk ends at the start
+        for (int parentBlank = reached.get(tiles, 0) & NO_PARENT; parentBlank != NO_PARENT;
+                parentBlank = reached.get(tiles, 0) & NO_PARENT) {
+            tiles = State.slide(tiles, blank, parentBlank);
+            blank = parentBlank;
+            res[n++] = blank;
+        }
+        int[] blanks = new int[n];
+        for (int i = 0; i < n; i++) {
+            blanks[i] = res[n - 1 - i];
+        }
+        return blanks;
+    }
+
+    private void addIncons(long tiles, int h) {
+        if (inconsSize == inconsTiles.length) {
+            inconsTiles = Arrays.copyOf(inconsTiles, inconsSize << 1);
+            inconsH = Arrays.copyOf(inconsH, inconsSize << 1);
+        }
+        inconsTiles[inconsSize] = tiles;
+        inconsH[inconsSize++] = h;
+    }
+
+    private void push(long tiles, int key, int g, int h) {
+        if (heapSize == heapTiles.length) {
+            heapTiles = Arrays.copyOf(heapTiles, heapSize << 1);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize << 1);
+            heapG = Arrays.copyOf(heapG, heapSize << 1);
+            heapH = Arrays.copyOf(heapH, heapSize << 1);
+        }
+        int i = heapSize++;
+        set(i, tiles, key, g, h);
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void pop() {
+        heapSize--;
+        if (heapSize > 0) {
+            set(0, heapTiles[heapSize], heapKeys[heapSize], heapG[heapSize], heapH[heapSize]);
+            siftDown(0);
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && before(child + 1, child)) {
+                child++;
+            }
+            if (!before(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /**
+     * Orders heap slots by key, then deeper first.
+     */
+    private boolean before(int a, int b) {
+        return heapKeys[a] < heapKeys[b] || (heapKeys[a] == heapKeys[b] && heapG[a] > heapG[b]);
+    }
+
+    private void set(int i, long tiles, int key, int g, int h) {
+        heapTiles[i] = tiles;
+        heapKeys[i] = key;
+        heapG[i] = g;
+        heapH[i] = h;
+    }
+
+    private void swap(int a, int b) {
+        long tiles = heapTiles[a];
+        int key = heapKeys[a];
+        int g = heapG[a];
+        int h = heapH[a];
+        set(a, heapTiles[b], heapKeys[b], heapG[b], heapH[b]);
+        set(b, tiles, key, g, h);
+    }
+}
@@ -0,0 +1,225 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Layer-synchronous beam search over packed boards. Each layer holds at most k boards; all of their
+ * successors are generated into a preallocated buffer, and the k with the lowest h1 + h2 form the next
+ * layer. The selection keeps a bounded max-heap of the best k seen so far, so a layer of n successors
+ * costs O(n log k) instead of a full sort. Boards are never revisited across or within layers.
+ *
+ * Wide beams (k of at least PARALLEL_WIDTH) generate successors in parallel on the common ForkJoinPool.
+ * Every parent writes into its own fixed slots of the buffer and only reads the reached map, so the
+ * workers share nothing; duplicates are then removed in one sequential pass, which keeps the result the
+ * same as a sequential run.
+ */
+public class BeamSearch {
+    static final int PARALLEL_WIDTH = 10_000; // beam width from which layers are expanded in parallel
+    private static final int SLOTS = 4; // successor slots per parent, the most moves a blank has
+    private static final int CHUNK = 1024; // parents per parallel task
+
+    private final int k;
+    private final int maxNode;
+    private SearchMetrics metrics;
+
+    // successor buffer, indexed parent * SLOTS + slot; tiles of 0 mark an empty slot
+    private long[] nextTiles;
+    private int[] nextH;
+
+    /**
+     * Creates a solver.
+     * @param k the beam width
+     * @param maxNode the maximum number of boards to expand
+     */
+    public BeamSearch(int k, int maxNode) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Beam width must be at least 1, got " + k);
+        }
+        this.k = k;
+        this.maxNode = maxNode;
+    }
+
+    /**
+     * Returns the counters of the last call to solve(). Peak open is the largest layer of successors
+     * before selection.
+     * @return the metrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Searches for the goal. The board must be packed.
+     * @param start the initial State object
+     * @return the blank cell after each move, starting with the initial blank, or null if the beam ran dry
+     * @throws RuntimeException if more than maxNode boards are expanded
+     */
+    public int[] solve(State start) {
+        Board board = start.getBoard();
+        metrics = new SearchMetrics("Beam " + k).start();
+        nextTiles = new long[k * SLOTS];
+        nextH = new int[k * SLOTS];
+        LongIntMap reached = new LongIntMap(1024);
+        // every layer kept for the path: its boards, their h, and each board's parent in the layer before
+        List<long[]> layerTiles = new ArrayList<>();
+        List<int[]> layerParents = new ArrayList<>();
+        long[] tiles = {start.getTiles()};
+        int[] h = {start.getH1() + start.getH2()};
+        metrics.evaluations++;
+        layerTiles.add(tiles);
+        layerParents.add(new int[] {-1});
+        reached.put(tiles[0], 0);
+        int[] heap = new int[k];
+
+        while (tiles.length > 0) {
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] == board.goalTiles) {
+                    metrics.finish(layerTiles.size() - 1);
+                    return path(layerTiles, layerParents, i);
+                }
+            }
+            if (metrics.expanded + tiles.length > maxNode) {
+                metrics.finish(-1);
+                throw new RuntimeException("MaxNode exceeded");
+            }
+            expand(board, reached, tiles, h);
+            metrics.expanded += tiles.length;
+            long generated = 0;
+            for (long curr : tiles) {
+                generated += board.successorCells[State.blankOf(curr)].length;
+            }
+            metrics.generated += generated;
+
+            // drop duplicates within the layer, then keep the k lowest h in a max-heap
+            int candidates = 0;
+            int size = 0;
+            for (int slot = 0; slot < tiles.length * SLOTS; slot++) {
+                long next = nextTiles[slot];
+                if (next == 0) {
+                    continue;
+                }
+                metrics.evaluations++;
+                if (reached.containsKey(next)) {
+                    continue;
+                }
+                reached.put(next, layerTiles.size());
+                candidates++;
+                if (size < k) {
+                    heap[size] = slot;
+                    siftUp(heap, size++);
+                } else if (before(slot, heap[0])) {
+                    heap[0] = slot;
+                    siftDown(heap, size);
+                }
+            }
+            metrics.duplicates += generated - candidates;
+            metrics.open(candidates);
+            metrics.closed(reached.size());
+
+            long[] layer = new long[size];
+            int[] layerH = new int[size];
+            int[] layerParent = new int[size];
+            for (int i = 0; i < size; i++) {
+                layer[i] = nextTiles[heap[i]];
+                layerH[i] = nextH[heap[i]];
+                layerParent[i] = heap[i] / SLOTS;
+            }
+            layerTiles.add(layer);
+            layerParents.add(layerParent);
+            tiles = layer;
+            h = layerH;
+        }
+        metrics.finish(-1);
+        return null;
+    }
+
+    /**
+     * Generates the successors of a layer into the buffer, skipping boards reached in earlier layers.
+     */
+    private void expand(Board board, LongIntMap reached, long[] tiles, int[] h) {
+        int n = tiles.length;
+        if (k >= PARALLEL_WIDTH && n > CHUNK) {
+            IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+                int end = Math.min(n, (chunk + 1) * CHUNK);
+                for (int i = chunk * CHUNK; i < end; i++) {
+                    expand(board, reached, tiles, h, i);
+                }
+            });
+        } else {
+            for (int i = 0; i < n; i++) {
+                expand(board, reached, tiles, h, i);
+            }
+        }
+    }
+
+    private void expand(Board board, LongIntMap reached, long[] tiles, int[] h, int i) {
+        long curr = tiles[i];
+        int blank = State.blankOf(curr);
+        int[] targets = board.successorCells[blank];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int index = i * SLOTS + slot;
+            nextTiles[index] = 0;
+            if (slot >= targets.length) {
+                continue;
+            }
+            int target = targets[slot];
+            long next = State.slide(curr, blank, target);
+            if (reached.containsKey(next)) {
+                continue;
+            }
+            int tile = State.tileAt(curr, target);
+            nextTiles[index] = next;
+            nextH[index] = h[i] + board.misplacedDelta(tile, target, blank) + board.manhattanDelta(tile, target, blank);
+        }
+    }
+
+    /**
+     * Orders buffer slots by h, then by slot so the selection does not depend on heap order.
+     */
+    private boolean before(int a, int b) {
+        return nextH[a] < nextH[b] || (nextH[a] == nextH[b] && a < b);
+    }
+
+    private void siftUp(int[] heap, int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(heap[parent], slot)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int slot = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!before(slot, heap[child])) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slot;
+    }
+
+    private int[] path(List<long[]> layerTiles, List<int[]> layerParents, int index) {
+        int depth = layerTiles.size() - 1;
+        int[] res = new int[depth + 1];
+        for (int d = depth; d >= 0; d--) {
+            res[d] = State.blankOf(layerTiles.get(d)[index]);
+            index = layerParents.get(d)[index];
+        }
+        return res;
+    }
+}
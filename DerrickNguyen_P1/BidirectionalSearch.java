@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * Bidirectional breadth-first search over packed boards. Every move costs one and can be undone, so
+ * the search grows one layer at a time from the start and from the goal, always on the side with the
+ * smaller frontier, and stops after the first layer that touches a board reached from the other side.
+ * Finishing that whole layer and keeping the cheapest meeting makes the stitched path optimal. For a
+ * solution of depth d each side only goes about d / 2 deep, which is roughly the square root of the
+ * boards a one-sided search would visit.
+ *
+ * Both sides share one LongIntMap, which records for each board its depth, the side that reached it and
+ * its parent's blank cell. A board is only ever stored for the side that reached it first, and finding
+ * it from the other side is the meeting test.
+ */
+public class BidirectionalSearch {
+    private static final int NO_PARENT = 0x1F; // parent blank field of the start and goal boards
+    private static final int BACKWARD = 0x20; // side bit of boards reached from the goal
+
+    private final int maxNode;
+    private Board board;
+    private LongIntMap reached; // board to depth << 6 | side | parent's blank cell
+    private SearchMetrics metrics; // counters of the last solve, both sides together
+    private long meetFrom; // board on the expanding side of the cheapest meeting in the last layer
+    private long meetTo; // its successor, reached earlier from the other side
+
+    /**
+     * Creates a solver that gives up after expanding the given number of nodes.
+     * @param maxNode the maximum number of nodes to expand on both sides together
+     */
+    public BidirectionalSearch(int maxNode) {
+        this.maxNode = maxNode;
+    }
+
+    /**
+     * Searches for an optimal solution. The board must be packed.
+     * @param start the initial State object
+     * @return the blank cell after each move, starting with the initial blank, or null if none exists
+     * @throws RuntimeException if more than maxNode nodes are expanded
+     */
+    public int[] solve(State start) {
+        board = start.getBoard();
+        metrics = new SearchMetrics("Bidir").start();
+        long first = start.getTiles();
+        if (first == board.goalTiles) {
+            metrics.finish(0);
+            return new int[] {start.getBlank()};
+        }
+        reached = new LongIntMap(1024);
+        reached.put(first, NO_PARENT);
+        reached.put(board.goalTiles, BACKWARD | NO_PARENT);
+        long[] forward = {first};
+        long[] backward = {board.goalTiles};
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+        while (forward.length > 0 && backward.length > 0) {
+            if (forward.length <= backward.length) {
+                forward = expand(forward, forwardDepth++, 0);
+            } else {
+                backward = expand(backward, backwardDepth++, BACKWARD);
+            }
+            if (forward == null || backward == null) {
+                int[] res = path();
+                metrics.finish(res.length - 1);
+                return res;
+            }
+            metrics.open(forward.length + backward.length);
+        }
+        metrics.finish(-1);
+        return null;
+    }
+
+    /**
+     * Returns the counters of the last call to solve(). The open list is both frontier layers together,
+     * and no heuristic is evaluated.
+     * @return the metrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Expands one whole layer of one side.
+     * @param layer the boards at the given depth on this side
+     * @param depth their depth
+     * @param side 0 for the start side, BACKWARD for the goal side
+     * @return the next layer, or null if the sides met
+     */
+    private long[] expand(long[] layer, int depth, int side) {
+        long[] next = new long[layer.length * 2 + 4];
+        int size = 0;
+        int best = Integer.MAX_VALUE;
+        for (long curr : layer) {
+            if (++metrics.expanded > maxNode) {
+                metrics.finish(-1);
+                throw new RuntimeException("MaxNode exceeded");
+            }
+            int blank = State.blankOf(curr);
+            for (int target : board.successorCells[blank]) {
+                long succ = State.slide(curr, blank, target);
+                metrics.generated++;
+                int entry = reached.get(succ, -1);
+                if (entry == -1) {
+                    reached.put(succ, (depth + 1) << 6 | side | blank);
+                    if (size == next.length) {
+                        next = Arrays.copyOf(next, size << 1);
+                    }
+                    next[size++] = succ;
+                } else {
+                    metrics.duplicates++;
+                    if ((entry & BACKWARD) != side && (entry >>> 6) < best) {
+                        best = entry >>> 6;
+                        meetFrom = curr;
+                        meetTo = succ;
+                    }
+                }
+            }
+        }
+        metrics.closed(reached.size());
+        return best == Integer.MAX_VALUE ? Arrays.copyOf(next, size) : null;
+    }
+
+    /**
+     * Stitches the start side's path to the meeting edge onto the goal side's path from it.
+     */
+    private int[] path() {
+        boolean fromStart = (reached.get(meetFrom, 0) & BACKWARD) == 0;
+        long forwardEnd = fromStart ? meetFrom : meetTo;
+        long backwardEnd = fromStart ? meetTo : meetFrom;
+        int forwardLength = reached.get(forwardEnd, 0) >>> 6;
+        int backwardLength = reached.get(backwardEnd, 0) >>> 6;
+        int[] res = new int[forwardLength + backwardLength + 2];
+        // the start side is walked backwards from the meeting edge, the goal side forwards from it
+        walk(forwardEnd, res, forwardLength, -1);
+        walk(backwardEnd, res, forwardLength + 1, 1);
+        return res;
+    }
+
+    /**
+     * Writes the blank cells along the parent links from a board to its side's root.
+     * @param curr the board to start from
+     * @param res the path being filled
+     * @param index where the blank of curr goes
+     * @param step -1 to fill toward the front of res, 1 toward the back
+     */
+    private void walk(long curr, int[] res, int index, int step) {
+        while (true) {
+            int blank = State.blankOf(curr);
+            res[index] = blank;
+            int parentBlank = reached.get(curr, 0) & NO_PARENT;
+            if (parentBlank == NO_PARENT) {
+                return;
+            }
+            curr = State.slide(curr, blank, parentBlank);
+            index += step;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Geometry of an N x N sliding-tile board: the goal layout, the cells the blank can move to, and the
+ * lookup tables the heuristics and solvers share. Boards of up to 16 cells (widths 2-4) also have a
+ * packed form with one 4-bit tile per cell in a long, which is what the A* and beam searches key on.
+ * The goal has the blank in cell 0 and tile v in cell v, as in "b12345678".
+ */
+public final class Board {
+    static final int MIN_WIDTH = 2;
+    static final int MAX_WIDTH = 5;
+    static final int MAX_PACKED_CELLS = 16; // 16 nibbles fill a long
+
+    private static final Board[] BOARDS = new Board[MAX_WIDTH + 1];
+
+    static {
+        for (int width = MIN_WIDTH; width <= MAX_WIDTH; width++) {
+            BOARDS[width] = new Board(width);
+        }
+    }
+
+    final int width; // number of rows and columns
+    final int cells; // width * width
+    final boolean packed; // true if a board fits into one long
+    final long goalTiles; // packed goal, 0 if the board is not packed
+    /**
+     * Cells the blank can slide into from each blank index, in the order up, left, down, right.
+     */
+    final int[][] successorCells;
+    /**
+     * Manhattan distance of each tile from each cell, indexed [tile][cell]; the blank row is all zeros.
+     */
+    final int[][] manhattan;
+    /**
+     * Change in Manhattan distance when a tile slides from one cell into the adjacent blank cell,
+     * indexed by moveIndex(tile, from, to).
+     */
+    private final byte[] manhattanDelta;
+    /**
+     * Change in the misplaced-tiles count (blank included, as in getH1) for the same move.
+     */
+    private final byte[] misplacedDelta;
+
+    private Board(int width) {
+        this.width = width;
+        this.cells = width * width;
+        this.packed = cells <= MAX_PACKED_CELLS;
+        this.successorCells = new int[cells][];
+        this.manhattan = new int[cells][cells];
+        long goal = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / width;
+            int col = cell % width;
+            for (int tile = 1; tile < cells; tile++) {
+                manhattan[tile][cell] = Math.abs(row - tile / width) + Math.abs(col - tile % width);
+            }
+            int[] targets = new int[4];
+            int n = 0;
+            if (row > 0) {
+                targets[n++] = cell - width;
+            }
+            if (col > 0) {
+                targets[n++] = cell - 1;
+            }
+            if (row < width - 1) {
+                targets[n++] = cell + width;
+            }
+            if (col < width - 1) {
+                targets[n++] = cell + 1;
+            }
+            successorCells[cell] = Arrays.copyOf(targets, n);
+            if (packed) {
+                goal |= (long) cell << (4 * cell);
+            }
+        }
+        this.goalTiles = goal;
+        this.manhattanDelta = new byte[cells * cells * cells];
+        this.misplacedDelta = new byte[cells * cells * cells];
+        for (int tile = 1; tile < cells; tile++) {
+            for (int to = 0; to < cells; to++) {
+                for (int from : successorCells[to]) {
+                    int i = moveIndex(tile, from, to);
+                    manhattanDelta[i] = (byte) (manhattan[tile][to] - manhattan[tile][from]);
+                    // the tile leaves from and enters to, while the blank leaves to and enters from
+                    int tileDelta = (to != tile ? 1 : 0) - (from != tile ? 1 : 0);
+                    int blankDelta = (from != 0 ? 1 : 0) - (to != 0 ? 1 : 0);
+                    misplacedDelta[i] = (byte) (tileDelta + blankDelta);
+                }
+            }
+        }
+    }
+
+    private int moveIndex(int tile, int from, int to) {
+        return (tile * cells + from) * cells + to;
+    }
+
+    /**
+     * Returns the change in Manhattan distance when a tile slides into the blank.
+     * @param tile the tile that moves
+     * @param from the cell the tile leaves, which becomes the blank
+     * @param to the blank cell the tile moves into
+     * @return the new h2 minus the old h2
+     */
+    public int manhattanDelta(int tile, int from, int to) {
+        return manhattanDelta[moveIndex(tile, from, to)];
+    }
+
+    /**
+     * Returns the change in the misplaced-tiles count when a tile slides into the blank.
+     * @param tile the tile that moves
+     * @param from the cell the tile leaves, which becomes the blank
+     * @param to the blank cell the tile moves into
+     * @return the new h1 minus the old h1
+     */
+    public int misplacedDelta(int tile, int from, int to) {
+        return misplacedDelta[moveIndex(tile, from, to)];
+    }
+
+    /**
+     * Returns the shared geometry for boards of the given width.
+     * @param width the number of rows and columns, MIN_WIDTH to MAX_WIDTH
+     * @return the Board for that width
+     */
+    public static Board of(int width) {
+        if (width < MIN_WIDTH || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Board width must be between " + MIN_WIDTH + " and " + MAX_WIDTH
+                    + ", got " + width);
+        }
+        return BOARDS[width];
+    }
+
+    /**
+     * Parses a board. Either every whitespace-separated token is a tile ("b" or a number), as in
+     * "b 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15", or every character is a tile with tokens grouping rows, as
+     * in "b12 345 678". Quotes are ignored. The width is the square root of the number of tiles.
+     * @param str_state the string representation of the board
+     * @return the tile in each cell, 0 for the blank
+     */
+    public static int[] parse(String str_state) {
+        String[] tokens = str_state.replace("\"", " ").trim().split("\\s+");
+        List<Integer> tiles = new ArrayList<>();
+        if (isSquare(tokens.length) && tokens.length >= MIN_WIDTH * MIN_WIDTH) {
+            for (String token : tokens) {
+                tiles.add(token.equals("b") ? 0 : Integer.parseInt(token));
+            }
+        } else {
+            for (String token : tokens) {
+                for (int i = 0; i < token.length(); i++) {
+                    char c = token.charAt(i);
+                    tiles.add(c == 'b' ? 0 : Character.getNumericValue(c));
+                }
+            }
+        }
+        int[] res = new int[tiles.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = tiles.get(i);
+        }
+        if (!isSquare(res.length)) {
+            throw new IllegalArgumentException("Board \"" + str_state + "\" does not have a square number of tiles");
+        }
+        of((int) Math.sqrt(res.length)).checkPermutation(res);
+        return res;
+    }
+
+    /**
+     * Returns the geometry matching the number of tiles in a parsed board.
+     * @param tiles the tile in each cell
+     * @return the Board for that size
+     */
+    public static Board forCells(int[] tiles) {
+        return of((int) Math.round(Math.sqrt(tiles.length)));
+    }
+
+    private static boolean isSquare(int n) {
+        int root = (int) Math.round(Math.sqrt(n));
+        return root * root == n;
+    }
+
+    private void checkPermutation(int[] tiles) {
+        boolean[] seen = new boolean[cells];
+        for (int tile : tiles) {
+            if (tile < 0 || tile >= cells || seen[tile]) {
+                throw new IllegalArgumentException("Board " + Arrays.toString(tiles) + " is not a permutation of 0-"
+                        + (cells - 1));
+            }
+            seen[tile] = true;
+        }
+    }
+
+    /**
+     * Packs one tile per cell into 4-bit nibbles, cell i in bits 4i..4i+3.
+     * @param tiles the tile in each cell
+     * @return the packed board
+     */
+    public long pack(int[] tiles) {
+        long res = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            res |= (long) tiles[cell] << (4 * cell);
+        }
+        return res;
+    }
+
+    /**
+     * Unpacks a packed board into one tile per cell.
+     * @param tiles the packed board
+     * @return the tile in each cell
+     */
+    public int[] unpack(long tiles) {
+        int[] res = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            res[cell] = State.tileAt(tiles, cell);
+        }
+        return res;
+    }
+
+    /**
+     * Computes the Manhattan distance heuristic for a packed board.
+     * @param tiles the packed board
+     * @return the sum over tiles of the distance to their goal cells
+     */
+    public int getH2(long tiles) {
+        int res = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            res += manhattan[State.tileAt(tiles, cell)][cell];
+        }
+        return res;
+    }
+
+    /**
+     * Computes the Manhattan distance heuristic for an unpacked board.
+     * @param tiles the tile in each cell
+     * @return the sum over tiles of the distance to their goal cells
+     */
+    public int getH2(int[] tiles) {
+        int res = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            res += manhattan[tiles[cell]][cell];
+        }
+        return res;
+    }
+
+    /**
+     * Counts the cells of a packed board that differ from the goal, including the blank's cell.
+     * @param tiles the packed board
+     * @return the h1 heuristic value
+     */
+    public int getH1(long tiles) {
+        // tile v belongs in cell v, so XOR against the goal leaves a non-zero nibble for every mismatch
+        long diff = tiles ^ goalTiles;
+        int res = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (((diff >>> (4 * cell)) & 0xF) != 0) {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Checks whether a board can reach the goal. A horizontal move never changes the number of
+     * inversions among the tiles, and a vertical move changes it by width - 1. On odd widths the inversion
+     * parity is therefore fixed; on even widths each vertical move also changes the blank's row, so the
+     * parity of inversions plus the blank's row is fixed. The goal has no inversions and the blank in row 0.
+     * @param tiles the tile in each cell
+     * @return true if the board is solvable
+     */
+    public boolean isSolvable(int[] tiles) {
+        int inversions = 0;
+        int blankRow = 0;
+        for (int i = 0; i < cells; i++) {
+            int a = tiles[i];
+            if (a == 0) {
+                blankRow = i / width;
+                continue;
+            }
+            for (int j = i + 1; j < cells; j++) {
+                int b = tiles[j];
+                if (b != 0 && a > b) {
+                    inversions++;
+                }
+            }
+        }
+        if (width % 2 == 1) {
+            return inversions % 2 == 0;
+        }
+        return (inversions + blankRow) % 2 == 0;
+    }
+
+    /**
+     * Names the move that slides the blank from one cell to an adjacent one.
+     * @param blank the cell index of the blank before the move
+     * @param target the cell index of the blank after the move
+     * @return "up", "down", "left" or "right"
+     */
+    public String direction(int blank, int target) {
+        if (target == blank - width) {
+            return "up";
+        } else if (target == blank + width) {
+            return "down";
+        } else if (target == blank - 1) {
+            return "left";
+        } else {
+            return "right";
+        }
+    }
+
+    /**
+     * Formats a board the way parse() reads it: one character per tile for boards whose tiles are single
+     * digits, space-separated tokens otherwise.
+     * @param tiles the tile in each cell
+     * @return the string representation of the board
+     */
+    public String format(int[] tiles) {
+        StringBuilder res = new StringBuilder();
+        for (int cell = 0; cell < cells; cell++) {
+            if (cells > 10 && cell > 0) {
+                res.append(' ');
+            }
+            if (tiles[cell] == 0) {
+                res.append('b');
+            } else {
+                res.append(tiles[cell]);
+            }
+        }
+        return res.toString();
+    }
+}
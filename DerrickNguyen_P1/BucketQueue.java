@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * Open list for A* over small integer f values. Entries are packed boards held in one LIFO stack per
+ * (f, h) pair, so push is O(1) and pop-min only advances a cursor over the buckets. Among entries with
+ * the lowest f, the one with the lowest h (the deepest one) is popped first, and the most recently
+ * pushed among those.
+ */
+public class BucketQueue {
+    private long[][] stacks; // stack for (f, h) is stacks[f * limit + h]
+    private int[] sizes;
+    private int limit; // f and h must be below this; grows on demand
+    private int size;
+    private int cursorF; // no entry has a smaller (f, h) than the cursor
+    private int cursorH;
+    private int lastF;
+    private int lastH;
+
+    /**
+     * Creates an empty queue.
+     * @param maxF the largest f value expected; larger values grow the bucket table
+     */
+    public BucketQueue(int maxF) {
+        this.limit = maxF + 1;
+        this.stacks = new long[limit * limit][];
+        this.sizes = new int[limit * limit];
+    }
+
+    /**
+     * Adds a board to the bucket for its f and h values.
+     * @param tiles the packed board
+     * @param f the board's g + h
+     * @param h the board's heuristic value, at most f
+     */
+    public void push(long tiles, int f, int h) {
+        if (f >= limit) {
+            grow(f + 1);
+        }
+        int bucket = f * limit + h;
+        long[] stack = stacks[bucket];
+        int n = sizes[bucket];
+        if (stack == null) {
+            stack = stacks[bucket] = new long[16];
+        } else if (n == stack.length) {
+            stack = stacks[bucket] = Arrays.copyOf(stack, n << 1);
+        }
+        stack[n] = tiles;
+        sizes[bucket] = n + 1;
+        size++;
+        if (f < cursorF || (f == cursorF && h < cursorH)) {
+            cursorF = f;
+            cursorH = h;
+        }
+    }
+
+    /**
+     * Removes the board with the lowest f, breaking ties toward lower h and then the latest push.
+     * lastF() and lastH() report the values it was pushed with.
+     * @return the packed board
+     */
+    public long pop() {
+        advance();
+        int bucket = cursorF * limit + cursorH;
+        size--;
+        lastF = cursorF;
+        lastH = cursorH;
+        return stacks[bucket][--sizes[bucket]];
+    }
+
+    /**
+     * Returns the lowest f in the queue without removing anything. The queue must not be empty.
+     * @return the f value the next pop() will report
+     */
+    public int peekF() {
+        advance();
+        return cursorF;
+    }
+
+    /**
+     * Returns the h of the board the next pop() will return, without removing it. The queue must not be
+     * empty.
+     * @return the h value the next pop() will report
+     */
+    public int peekH() {
+        advance();
+        return cursorH;
+    }
+
+    /**
+     * Moves the cursor to the lowest non-empty bucket.
+     */
+    private void advance() {
+        while (sizes[cursorF * limit + cursorH] == 0) {
+            if (++cursorH > cursorF) {
+                cursorF++;
+                cursorH = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the f value of the board returned by the last pop().
+     * @return the f value
+     */
+    public int lastF() {
+        return lastF;
+    }
+
+    /**
+     * Returns the h value of the board returned by the last pop().
+     * @return the h value
+     */
+    public int lastH() {
+        return lastH;
+    }
+
+    /**
+     * Checks whether the queue holds no boards.
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of boards in the queue.
+     * @return the entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every board while keeping the allocated buckets for reuse.
+     */
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        size = 0;
+        cursorF = 0;
+        cursorH = 0;
+    }
+
+    private void grow(int minLimit) {
+        int newLimit = Math.max(minLimit, limit << 1);
+        long[][] newStacks = new long[newLimit * newLimit][];
+        int[] newSizes = new int[newLimit * newLimit];
+        for (int f = 0; f < limit; f++) {
+            for (int h = 0; h <= f; h++) {
+                newStacks[f * newLimit + h] = stacks[f * limit + h];
+                newSizes[f * newLimit + h] = sizes[f * limit + h];
+            }
+        }
+        stacks = newStacks;
+        sizes = newSizes;
+        limit = newLimit;
+    }
+}
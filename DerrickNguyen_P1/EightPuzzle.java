@@ -1,8 +1,13 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public class EightPuzzle {
     private State state; // the current state of the puzzle
+    private boolean unsolvable; // true if state has the wrong parity to reach the goal
 
     private String[] commands; // an array of commands to read input from a file
     private int blank_row; // the row index of the blank tile in the puzzle
@@ -11,6 +16,15 @@ public class EightPuzzle {
     private int k;
     private String move_command;
     private String heuristic; // the heuristic function to use for A* search
+    private PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false); // where command output is written, flushed after each command
+
+    private static final int NO_PARENT = 0x1F; // reached entry for the start board: g = 0, no parent blank
+    private static final long DEFAULT_BUDGET = 64L << 20; // bytes SMA* may use when the command gives none
+    private static final long DEFAULT_DEADLINE = 100; // milliseconds ARA* may run when the command gives none
+    private static final ThreadLocal<EightPuzzle> WORKERS = ThreadLocal.withInitial(EightPuzzle::new); // solve context of each pool thread
+
+    private BucketQueue frontier; // A* open list, kept between solves and cleared at the start of each
+    private LongIntMap reached; // A* best g and parent blank per board, kept like frontier
 
     /**
      * Constructor for EightPuzzle class that reads input from a file and initializes the puzzle state.
@@ -18,60 +32,453 @@ public class EightPuzzle {
      */
     public EightPuzzle(String filename) {
         try {
-            FileInputStream inputStream = new FileInputStream(filename);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+            commands = readCommands(filename);
+
+            for (int i = 0; i < commands.length; i++) {
+                boolean keepGoing = execute(commands[i]);
+                out.flush();
+                if (!keepGoing) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Creates an empty puzzle with no state, used as a separate solver context for batch jobs and benchmarks.
+     */
+    EightPuzzle() {
+    }
 
-            List<String> commandList = new ArrayList<>();
+    /**
+     * Creates an empty puzzle with no state that writes its command output to the given stream.
+     * @param out where command output is written
+     */
+    EightPuzzle(PrintStream out) {
+        this.out = out;
+    }
 
+    /**
+     * Reads every line of a command file.
+     * @param filename the name of the file containing the commands
+     * @return the trimmed lines of the file
+     * @throws IOException if the file cannot be read
+     */
+    static String[] readCommands(String filename) throws IOException {
+        List<String> commandList = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename)))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 commandList.add(line.trim());
             }
+        }
+        return commandList.toArray(new String[0]);
+    }
 
-            reader.close();
-            inputStream.close();
+    /**
+     * Runs a single command against the current state, writing any output to this puzzle's output stream.
+     * @param command one line of a command file
+     * @return false if the command set an unsolvable state and no further commands should run
+     */
+    boolean execute(String command) {
+        String[] tokens = command.split("\\s+");
+        String usage = usage(tokens);
+        if (usage != null) {
+            out.println("Usage: " + usage);
+            return true;
+        }
+        if (this.state == null && (tokens[0].equals("solve") || tokens[0].equals("printState")
+                || tokens[0].equals("move"))) {
+            out.println("No state set, use setState first");
+            return true;
+        }
+        if (tokens[0].equals("setState")) {
+            String stateStr = String.join(" ", Arrays.copyOfRange(tokens, 1, tokens.length));
+            setState(new State(stateStr));
+            unsolvable = !this.state.isSolvable(state);
+            if (unsolvable) {
+                out.print("Unsolvable");
+                return false;
+            }
+        } else if (tokens[0].equals("printState")) {
+            out.println("Current State is");
+            printState();
+        } else if (tokens[0].equals("solve") && unsolvable) {
+            out.println("Unsolvable"); // no search can reach the goal from the wrong parity
+        } else if (tokens[0].equals("solve")) {
+            SearchResult result;
+            String name;
+            if(tokens[1].equals("Beam")){
+                this.k = Integer.parseInt(tokens[2]);
+                result = solve(state, "Beam", null, k);
+                name = "Beam Search";
+            }
+            else if(tokens[1].equals("IDA*")){
+                this.heuristic = tokens.length > 2 ? tokens[2] : "h2";
+                result = solve(state, "IDA*", heuristic, 0);
+                name = "IDA* search with " + this.heuristic;
+            }
+            else if(tokens[1].equals("HDA*")){
+                this.heuristic = tokens.length > 2 ? tokens[2] : "h2";
+                int threads = tokens.length > 3 ? Integer.parseInt(tokens[3]) : Runtime.getRuntime().availableProcessors();
+                result = solve(state, "HDA*", heuristic, threads);
+                name = "HDA* search with " + this.heuristic + " on " + threads + " threads";
+            }
+            else if(tokens[1].equals("SMA*")){
+                this.heuristic = tokens.length > 2 ? tokens[2] : "h2";
+                long budget = tokens.length > 3 ? parseBytes(tokens[3]) : DEFAULT_BUDGET;
+                result = solve(state, "SMA*", heuristic, budget);
+                name = "SMA* search with " + this.heuristic + " in " + budget + " bytes";
+            }
+            else if(tokens[1].equals("ARA*")){
+                this.heuristic = tokens.length > 2 ? tokens[2] : "h2";
+                long millis = tokens.length > 3 ? Long.parseLong(tokens[3]) : DEFAULT_DEADLINE;
+                double weight = tokens.length > 4 ? Double.parseDouble(tokens[4]) : ARAStar.DEFAULT_WEIGHT;
+                result = solve_ARA_star(state, heuristic, millis, weight);
+                name = "ARA* search with " + this.heuristic + " in " + millis + " ms";
+                if (result != null) {
+                    name += String.format(", within %.2f of optimal", result.bound);
+                }
+            }
+            else if(tokens[1].equals("Bidir")){
+                result = solve(state, "Bidir", null, 0);
+                name = "Bidirectional search";
+            }
+            else if(tokens[1].equals("DB")){
+                result = solve(state, "DB", null, 0);
+                name = "Database search";
+            }
+            else {
+                this.heuristic = tokens[1];
+                result = solve(state, "A*", heuristic, 0);
+                name = "A* search with " + this.heuristic;
+            }
+            if (result != null) {
+                out.print(result);
+                this.state = result.end;
+            }
+            out.println(name);
+        } else if (tokens[0].equals("printCache")) {
+            out.println(SolutionCache.shared());
+        } else if (tokens[0].equals("maxNodes")) {
+            this.maxNode(Integer.parseInt(tokens[1]));
+        } else if (tokens[0].equals("move")) {
+            move_command = tokens[1];
+            setState(state.move(move_command));
+        } else if (tokens[0].equals("randomizeState")) {
+            Board board = this.state != null ? this.state.getBoard() : State.EIGHT;
+            setState(EightPuzzle.randomizeState(board, Integer.parseInt(tokens[1])));
+            unsolvable = false;
+        }
+        return true;
+    }
 
-            commands = commandList.toArray(new String[0]);
+    /**
+     * Checks that a command has the arguments it needs, so a short command gets a usage line instead of
+     * an index error.
+     * @param tokens the words of the command
+     * @return the usage of the command if arguments are missing or malformed, else null
+     */
+    private static String usage(String[] tokens) {
+        switch (tokens[0]) {
+            case "setState":
+                return tokens.length < 2 ? "setState \"<tiles>\"" : null;
+            case "maxNodes":
+                return tokens.length < 2 || !isInteger(tokens[1]) ? "maxNodes <n>" : null;
+            case "move":
+                return tokens.length < 2 ? "move up|down|left|right" : null;
+            case "randomizeState":
+                return tokens.length < 2 || !isInteger(tokens[1]) ? "randomizeState <moves>" : null;
+            case "solve":
+                if (tokens.length < 2) {
+                    return "solve h1|h2|<heuristic>|Beam <k>|IDA* [heur]|HDA* [heur] [threads]"
+                            + "|SMA* [heur] [bytes]|ARA* [heur] [ms] [weight]|Bidir|DB";
+                }
+                if (tokens[1].equals("Beam") && (tokens.length < 3 || !isInteger(tokens[2]))) {
+                    return "solve Beam <k>";
+                }
+                if (tokens[1].equals("HDA*") && tokens.length > 3 && !isInteger(tokens[3])) {
+                    return "solve HDA* [heur] [threads]";
+                }
+                if (tokens[1].equals("SMA*") && tokens.length > 3 && !tokens[3].matches("\\d+[kKmMgG]?")) {
+                    return "solve SMA* [heur] [bytes, with an optional k, m or g suffix]";
+                }
+                if (tokens[1].equals("ARA*") && ((tokens.length > 3 && !isInteger(tokens[3]))
+                        || (tokens.length > 4 && !tokens[4].matches("\\d+(\\.\\d+)?")))) {
+                    return "solve ARA* [heur] [ms] [weight]";
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
 
-            for (int i = 0; i < commands.length; i++) {
-                String[] tokens = commands[i].split("\\s+");
-                if (tokens[0].equals("setState")) {
-                    String stateStr = tokens[1];
-                    stateStr = stateStr.concat(tokens[2]);
-                    stateStr = stateStr.concat(tokens[3]);
-                    setState(new State(stateStr));
-                    if (!this.state.isSolvable(state)) {
-                        System.out.print("Unsolvable");
-                        break;
+    private static boolean isInteger(String str) {
+        return str.matches("-?\\d{1,9}");
+    }
+
+    /**
+     * Runs one solver on a start state, the way the solve command does. Beam search and A* answer from the
+     * shared SolutionCache when they can.
+     * @param start the initial State object
+     * @param solver "A*", "Beam", "IDA*", "HDA*", "SMA*", "ARA*", "Bidir" or "DB"
+     * @param heuristic the heuristic of A*, IDA*, HDA*, SMA* and ARA*, ignored by the others
+     * @param budget the beam width of Beam, the thread count of HDA*, the bytes of SMA* and the milliseconds of
+     * ARA*, ignored by the others
+     * @return the solution, or null if the solver found none
+     */
+    SearchResult solve(State start, String solver, String heuristic, long budget) {
+        switch (solver) {
+            case "Beam":
+                int k = (int) budget;
+                return cached("Beam " + k, start, false, () -> beam_search(start, k));
+            case "IDA*":
+                return solve_IDA_star(start, heuristic);
+            case "HDA*":
+                return solve_HDA_star(start, heuristic, (int) budget);
+            case "SMA*":
+                return solve_SMA_star(start, heuristic, budget);
+            case "ARA*":
+                return solve_ARA_star(start, heuristic, budget, ARAStar.DEFAULT_WEIGHT);
+            case "Bidir":
+                return solve_bidirectional(start);
+            case "DB":
+                return solve_database(start);
+            default:
+                // every heuristic but h1, which also counts the blank, is admissible
+                return cached("A* " + heuristic, start, !heuristic.equals("h1"), () -> solve_A_star(start, heuristic));
+        }
+    }
+
+    /**
+     * Runs a command file with its solve commands spread across a work-stealing thread pool, as serve()
+     * does for a stream, stopping at the first unsolvable state as a sequential run would.
+     * @param filename the name of the file containing the commands
+     * @param threads the number of worker threads
+     * @throws IOException if the file cannot be read or the output cannot be written
+     */
+    public static void runBatch(String filename, int threads) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename)))) {
+            serve(reader, System.out, threads, true);
+        }
+    }
+
+    /**
+     * Reads commands line by line and answers them as a pipeline. The non-solve commands are replayed in
+     * order on one planning context, which hands each solve a copy of the state at that point. A sequential
+     * run continues from the goal after a solve that succeeds and from the start after one that fails, so
+     * a later command that reads the state waits for the solve to find out which; setState and the other
+     * commands that replace the state or leave it alone go ahead at once. Solves run on a work-stealing pool,
+     * each in the calling worker's own EightPuzzle, so search buffers are reused from one solve to the
+     * next. A writer thread prints every response, in input order, as soon as it and all earlier ones are
+     * done, and flushes whenever it catches up, so an upstream process can keep sending requests while
+     * earlier ones are being solved.
+     * @param in the commands, one per line
+     * @param out where responses are written
+     * @param threads the number of worker threads
+     * @param stopOnUnsolvable true to stop reading at the first unsolvable state, false to keep serving, in
+     *                         which case a solve from that state answers Unsolvable without being searched
+     * @throws IOException if the commands cannot be read or the output cannot be written
+     */
+    public static void serve(BufferedReader in, OutputStream out, int threads, boolean stopOnUnsolvable)
+            throws IOException {
+        EightPuzzle planner = new EightPuzzle();
+        BlockingQueue<Future<String>> responses = new LinkedBlockingQueue<>();
+        Future<String> end = CompletableFuture.completedFuture(null);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        IOException[] failure = new IOException[1];
+        Thread writer = new Thread(() -> {
+            try {
+                Writer writes = new BufferedWriter(new OutputStreamWriter(out));
+                for (Future<String> response = responses.take(); response != end; response = responses.take()) {
+                    String text = response.get();
+                    writes.write(text);
+                    if (!text.isEmpty() && !text.endsWith("\n")) {
+                        writes.write('\n');
                     }
-                } else if (tokens[0].equals("printState")) {
-                    System.out.println("Current State is");
-                    printState();
-                } else if (tokens[0].equals("solve")) {
-                    if(tokens[1].equals("Beam")){
-                        this.k = Integer.parseInt(tokens[2]);
-                        beam_search(state, k);
-                        System.out.println("Beam Search");
+                    if (responses.isEmpty()) {
+                        writes.flush();
                     }
-                    else {
-                        this.heuristic = tokens[1];
-                        solve_A_star(state, heuristic);
-                        System.out.print("A* search with "+ this.heuristic);
+                }
+                writes.flush();
+            } catch (IOException e) {
+                failure[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                failure[0] = new IOException(e.getCause());
+            }
+        }, "responses");
+        writer.start();
+        CompletableFuture<State> solved = null; // the state after the last solve submitted, once it is known
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.trim();
+                String name = command.split("\\s+")[0];
+                if (solved != null && (name.equals("setState") || name.equals("randomizeState"))) {
+                    solved = null; // replaced before anything read it
+                } else if (solved != null && readsState(name)) {
+                    planner.state = solved.join();
+                    solved = null;
+                }
+                if (name.equals("solve") && planner.state != null && !planner.unsolvable
+                        && usage(command.split("\\s+")) == null) {
+                    State start = new State(planner.state.toCells());
+                    int maxNode = planner.maxNode;
+                    CompletableFuture<State> after = new CompletableFuture<>();
+                    responses.add(pool.submit(() -> {
+                        EightPuzzle job = WORKERS.get();
+                        job.state = start;
+                        job.maxNode = maxNode;
+                        job.unsolvable = false;
+                        try {
+                            return job.run(command);
+                        } finally {
+                            after.complete(job.state); // the goal if the solve succeeded, else the start
+                        }
+                    }));
+                    solved = after;
+                } else {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    planner.out = new PrintStream(buffer);
+                    boolean keepGoing;
+                    try {
+                        keepGoing = planner.execute(command);
+                    } catch (RuntimeException e) {
+                        planner.out.println(e.getMessage()); // a malformed command must not end the stream
+                        keepGoing = true;
+                    }
+                    planner.out.flush();
+                    responses.add(CompletableFuture.completedFuture(buffer.toString()));
+                    if (!keepGoing && stopOnUnsolvable) {
+                        break;
                     }
-                } else if (tokens[0].equals("maxNodes")) {
-                    this.maxNode(Integer.parseInt(tokens[1]));
-                } else if (tokens[0].equals("move")) {
-                    move_command = tokens[1];
-                    setState(new State(state.move(move_command).toStringState()));
-                } else if (tokens[0].equals("randomizeState")) {
-                    setState(EightPuzzle.randomizeState(Integer.parseInt(tokens[1])));
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error reading file: " + e.getMessage());
+        } finally {
+            responses.add(end);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool.shutdownNow();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
         }
     }
 
+    /**
+     * Checks whether a command's outcome depends on the current state, rather than replacing the state or
+     * leaving it alone. randomizeState only reads the board size, which a solve never changes.
+     * @param name the first word of the command
+     * @return true if the command must see the state left by earlier solves
+     */
+    private static boolean readsState(String name) {
+        return !name.equals("setState") && !name.equals("randomizeState") && !name.equals("maxNodes")
+                && !name.equals("printCache");
+    }
+
+    /**
+     * Solves every record of an instance file that has a solve mode and stores the solutions in the file.
+     * The records are cut into slices by index, which the pool's workers take from each other as they
+     * finish, each solving its slice in its own EightPuzzle straight from the mapped file. A record whose
+     * board is unsolvable, whose solver finds nothing or gives up, or whose solution does not fit keeps
+     * NO_SOLUTION.
+     * @param filename the instance file
+     * @param threads the number of worker threads
+     * @param maxNode the maximum number of nodes each search may explore
+     * @return the number of records solved
+     * @throws IOException if the file cannot be mapped
+     */
+    static int solveInstances(String filename, int threads, int maxNode) throws IOException {
+        InstanceFile file = InstanceFile.open(filename, true);
+        int slices = Math.min(file.size(), 8 * threads);
+        AtomicInteger solved = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, slices).parallel().forEach(slice -> {
+                EightPuzzle job = WORKERS.get();
+                job.out = new PrintStream(OutputStream.nullOutputStream());
+                job.maxNode = maxNode;
+                int end = (int) ((long) (slice + 1) * file.size() / slices);
+                for (int i = (int) ((long) slice * file.size() / slices); i < end; i++) {
+                    int mode = file.mode(i);
+                    State start = file.state(i);
+                    if (mode == InstanceFile.NONE || !start.isSolvable(start)) {
+                        continue;
+                    }
+                    long budget = file.budget(i);
+                    if (budget == 0) {
+                        budget = mode == InstanceFile.SMA_STAR ? DEFAULT_BUDGET
+                                : mode == InstanceFile.ARA_STAR ? DEFAULT_DEADLINE : Runtime.getRuntime().availableProcessors();
+                    }
+                    try {
+                        SearchResult result = job.solve(start, InstanceFile.MODES[mode], file.heuristic(i), budget);
+                        if (result != null) {
+                            file.setMoves(i, result.moves);
+                            solved.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        // gave up or too long to store: the record stays unsolved
+                    }
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        file.force();
+        return solved.get();
+    }
+
+    /**
+     * Loads the shared tables and runs a few searches so the first requests of a long-running service
+     * are not slowed down by table building or by the JIT compiler.
+     */
+    static void warmUp() {
+        for (String heuristic : new String[] {"lc", "wd", "pdb"}) {
+            Heuristic.forName(heuristic, State.EIGHT);
+        }
+        EightPuzzle puzzle = new EightPuzzle();
+        puzzle.out = new PrintStream(OutputStream.nullOutputStream());
+        puzzle.maxNode(Integer.MAX_VALUE);
+        puzzle.solve_database(new State(State.GOAL));
+        State start = new State("867 254 3b1");
+        for (int i = 0; i < 20; i++) {
+            puzzle.solve_A_star(start, "h2");
+            puzzle.solve_IDA_star(start, "pdb");
+            puzzle.beam_search(new State(start.toCells()), 100);
+        }
+    }
+
+    /**
+     * Runs one command and returns everything it printed. A search that gives up reports its message
+     * instead of ending the batch.
+     * @param command one line of a command file
+     * @return the command's output
+     */
+    private String run(String command) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        this.out = new PrintStream(buffer);
+        try {
+            execute(command);
+        } catch (RuntimeException e) {
+            out.println(e.getMessage());
+        }
+        out.flush();
+        return buffer.toString();
+    }
+
     /**
      * Sets the current state of the puzzle.
      * @param state the new State object representing the puzzle state
@@ -83,11 +490,12 @@ public class EightPuzzle {
      * Prints the current state of the puzzle to the console.
      */
     public void printState() {
-        this.state.printState();
+        this.state.printState(out);
     }
 
     /**
-     * Sets the maximum number of nodes to explore during search.
+     * Sets the maximum number of nodes to explore during search. Solves answered from the SolutionCache
+     * explore none and are not limited by it.
      * @param n the new maximum number of nodes
      */
     public void maxNode(int n){
@@ -99,191 +507,388 @@ public class EightPuzzle {
      * @param n the number of random moves to make
      * @return a new State object representing the randomized puzzle state
      */
-   public static State randomizeState(int n){
-        State goal = new State("b12 345 678");
-        State temp = goal;
+    public static State randomizeState(int n){
+        return randomizeState(State.EIGHT, n);
+    }
+    /**
+     * Generates a randomized puzzle state by making n random moves from the goal state of the given board size.
+     * The walk slides tiles within one array and builds a single State at the end.
+     * @param board the geometry of the board to shuffle
+     * @param n the number of random moves to make
+     * @return a new State object representing the randomized puzzle state
+     */
+    public static State randomizeState(Board board, int n){
+        int[] cells = State.goal(board).toCells();
+        int blank = 0;
+        int last = board.width - 1;
+        int[] targets = new int[4];
         Random rand = new Random();
-        String[] direction;
         rand.setSeed(0);
         for(int i = 0; i < n;i++){
-                int index = rand.nextInt(temp.action_Avai().size());
-                String direct = temp.action_Avai().get(index);
-                temp = temp.move(direct);
+                // the moves in action_Avai() order, so a seed walks the same boards as before
+                int row = blank / board.width;
+                int col = blank % board.width;
+                int count = 0;
+                if (row > 0) {
+                    targets[count++] = blank - board.width;
+                }
+                if (row < last) {
+                    targets[count++] = blank + board.width;
+                }
+                if (col > 0) {
+                    targets[count++] = blank - 1;
+                }
+                if (col < last) {
+                    targets[count++] = blank + 1;
+                }
+                int target = targets[rand.nextInt(count)];
+                cells[blank] = cells[target];
+                cells[target] = 0;
+                blank = target;
         }
-        return temp;
+        return new State(cells);
     }
     /**
-     * Implements the A* search algorithm to find a solution to the puzzle.
+     * Answers a solve from the shared SolutionCache if it holds the board for this mode, and otherwise runs
+     * the solver and stores its solution. A cached answer searches nothing, so it is returned whatever
+     * maxNodes is set to, and is marked as a cache hit so it does not claim zero states were visited.
+     * @param mode the solver and its parameters, as in "A* h2"
+     * @param start the initial State object
+     * @param optimal true if the solver's solutions are optimal, so their suffixes can be cached too
+     * @param solver runs the search on a cache miss
+     * @return the solution, or null if the solver found none
+     */
+    private SearchResult cached(String mode, State start, boolean optimal, Supplier<SearchResult> solver) {
+        if (!start.getBoard().packed) {
+            return solver.get();
+        }
+        SolutionCache cache = SolutionCache.shared();
+        List<String> moves = cache.get(mode, start.getTiles());
+        if (moves != null) {
+            SearchMetrics metrics = new SearchMetrics(mode + " cached").start();
+            metrics.finish(moves.size());
+            SearchResult result = SearchResult.fromMoves(start, moves, metrics);
+            result.cached = true;
+            return result;
+        }
+        SearchResult result = solver.get();
+        if (result != null) {
+            cache.put(mode, start.getBoard(), start.getTiles(), result.moves, optimal);
+        }
+        return result;
+    }
+    /**
+     * Implements the A* search algorithm to find a solution to the puzzle. The path is rebuilt from the
+     * parent blanks in the reached map once the goal is popped.
      * @param initial_state the initial State object representing the puzzle state
      * @param heuristic the heuristic function to use for A* search
+     * @return the solution, or null if none was found
      */
-    public void solve_A_star(State initial_state, String heuristic){
-        int node_num = 0;
-        int move_count = 0;
-        PriorityQueue<State> frontier = new PriorityQueue<>(new Comparator<State>() {
-            @Override
-            public int compare(State o1, State o2) {
-                return o1.getF() - o2.getF();
-            }
-        });
-        HashMap<State, Integer> reached = new HashMap<>();
-        System.out.print("Directions: ");
-        initial_state.setG(0);
-        frontier.add(initial_state);
-        reached.put(initial_state, 0);
+    public SearchResult solve_A_star(State initial_state, String heuristic){
+        Board board = initial_state.getBoard();
+        if (!board.packed) {
+            out.println("A* needs a board of at most " + Board.MAX_PACKED_CELLS + " cells, use IDA*");
+            return null;
+        }
+        SearchMetrics metrics = new SearchMetrics("A* " + heuristic).start();
+        Heuristic estimator = Heuristic.forName(heuristic, board);
+        // open list of packed boards bucketed by f; reached maps each board to (best g << 5 | parent's blank cell)
+        if (frontier == null) {
+            frontier = new BucketQueue(32);
+            reached = new LongIntMap(1024);
+        } else {
+            frontier.clear();
+            reached.clear();
+        }
+        BucketQueue frontier = this.frontier;
+        LongIntMap reached = this.reached;
+        long start = initial_state.getTiles();
+        int startH = estimator.estimate(start);
+        metrics.evaluations++;
+        frontier.push(start, startH, startH);
+        reached.put(start, NO_PARENT);
 
         while(frontier.isEmpty() == false){
-            if(node_num > this.maxNode){
-                throw new RuntimeException("MaxNode exceeded");
+            long curr = frontier.pop();
+            int currH = frontier.lastH();
+            int g = frontier.lastF() - currH;
+            int entry = reached.get(curr, 0);
+            if (g > entry >>> 5) {
+                continue; // a cheaper path to this board was queued after this entry
             }
-            State curr = frontier.poll();
-            this.state = curr;
-            if(curr.getParent() != null) {
-                if (curr.getCurrent_blank_col() > curr.getParent().getCurrent_blank_col()) {
-                    String move = "right ";
-                    System.out.print(move);
-                    move_count++;
-                }
-                if (curr.getCurrent_blank_col() < curr.getParent().getCurrent_blank_col()) {
-                    String move = "left ";
-                    System.out.print(move);
-                    move_count++;
-
-                }
-                if (curr.getCurrent_blank_row() > curr.getParent().getCurrent_blank_row()) {
-                    String move = "down ";
-                    System.out.print(move);
-                    move_count++;
-                }
-                if (curr.getCurrent_blank_row() < curr.getParent().getCurrent_blank_row()) {
-                    String move = "up ";
-                    System.out.print(move);
-                    move_count++;
-                }
+            int blank = State.blankOf(curr);
+            if(curr == board.goalTiles){
+                metrics.finish(g);
+                return new SearchResult(path(board, reached, curr, g), metrics, new State(board, curr, blank));
             }
-            if(curr.isGoal()){
-                System.out.println("\n" + "Number of tiles moved " + move_count);
-                System.out.println("Number of states visited " + node_num);
-                System.out.println("Found goal state");
-                return;
+            else if(metrics.expanded >= this.maxNode){
+                metrics.finish(-1);
+                throw new RuntimeException("MaxNode exceeded");
             }
             else {
-                for (State neighbor : curr.neighbors()) {
-                    if(neighbor != null) {
-                        if (!reached.containsKey(neighbor.toStringState()) || (neighbor.getG() < reached.get(neighbor.toStringState()))) {
-                            neighbor.setG(curr.getG() + 1);
-                            if (heuristic.equals("h1")) {
-                                neighbor.setH(neighbor.getH1());
-                            } else {
-                                neighbor.setH(neighbor.getH2());
-                            }
-                            neighbor.setParent(curr);
-                            frontier.add(neighbor);
-                            reached.put(neighbor, neighbor.getG());
-                            node_num++;
-                        }
+                metrics.expanded++;
+                for (int target : board.successorCells[blank]) {
+                    long next = State.slide(curr, blank, target);
+                    int nextG = g + 1;
+                    metrics.generated++;
+                    if (nextG < reached.get(next, Integer.MAX_VALUE) >>> 5) {
+                        int h = estimator.update(currH, next, State.tileAt(curr, target), target, blank);
+                        metrics.evaluations++;
+                        frontier.push(next, nextG + h, h);
+                        reached.put(next, nextG << 5 | blank);
+                    } else {
+                        metrics.duplicates++;
                     }
                 }
+                metrics.open(frontier.size());
+                metrics.closed(reached.size());
             }
         }
+        metrics.finish(-1);
+        return null;
+    }
+    /**
+     * Rebuilds the moves to a board by following parent blanks in a reached map back to the start.
+     * @param board the board geometry
+     * @param reached map from each board to (g << 5 | parent's blank cell)
+     * @param tiles the packed board the path ends at
+     * @param g the number of moves to tiles
+     * @return the moves from the start to tiles
+     */
+    private static List<String> path(Board board, LongIntMap reached, long tiles, int g) {
+        String[] moves = new String[g];
+        int blank = State.blankOf(tiles);
+        for (int i = g - 1; i >= 0; i--) {
+            int parentBlank = reached.get(tiles, 0) & NO_PARENT;
+            moves[i] = board.direction(parentBlank, blank);
+            tiles = State.slide(tiles, blank, parentBlank);
+            blank = parentBlank;
+        }
+        return Arrays.asList(moves);
+    }
+    /**
+     * Implements iterative-deepening A*. Memory use is linear in the solution depth, and maxNode bounds the
+     * total number of expansions across all iterations.
+     * @param initial_state the initial State object representing the puzzle state
+     * @param heuristic "h2" for incrementally updated Manhattan distance, or another heuristic name
+     *                  understood by Heuristic.forName for packed boards
+     * @return the solution, or null if none was found
+     */
+    public SearchResult solve_IDA_star(State initial_state, String heuristic){
+        Board board = initial_state.getBoard();
+        if (!heuristic.equals("h2") && !board.packed) {
+            out.println("Only h2 is available for boards of more than " + Board.MAX_PACKED_CELLS + " cells");
+            return null;
+        }
+        IDAStar search = heuristic.equals("h2") ? new IDAStar(this.maxNode)
+                : new IDAStar(this.maxNode, Heuristic.forName(heuristic, board));
+        int[] blanks = search.solve(initial_state);
+        if (blanks == null) {
+            out.println("Unsolvable");
+            return null;
+        }
+        return SearchResult.fromBlanks(initial_state, blanks, search.getMetrics());
+    }
+    /**
+     * Implements hash-distributed parallel A*. Boards are split across worker threads by hash, each thread
+     * searching its own share, and the result is still optimal. maxNode bounds the expansions of all
+     * threads together.
+     * @param initial_state the initial State object representing the puzzle state
+     * @param heuristic the heuristic function to use, by the names Heuristic.forName understands
+     * @param threads the number of worker threads
+     * @return the solution, or null if none was found
+     */
+    public SearchResult solve_HDA_star(State initial_state, String heuristic, int threads){
+        Board board = initial_state.getBoard();
+        if (!board.packed) {
+            out.println("HDA* needs a board of at most " + Board.MAX_PACKED_CELLS + " cells, use IDA*");
+            return null;
+        }
+        HDAStar search = new HDAStar(this.maxNode, Heuristic.forName(heuristic, board), threads);
+        int[] blanks = search.solve(initial_state);
+        if (blanks == null) {
+            out.println("Unsolvable");
+            return null;
+        }
+        return SearchResult.fromBlanks(initial_state, blanks, search.getMetrics());
+    }
+    /**
+     * Implements memory-bounded A* (SMA*). The search drops its worst leaves when the tree reaches the byte
+     * budget and regenerates them if needed, so it still returns an optimal solution as long as the budget
+     * can hold the path to it. maxNode bounds the expansions, regenerations included.
+     * @param initial_state the initial State object representing the puzzle state
+     * @param heuristic the heuristic function to use, by the names Heuristic.forName understands
+     * @param budget the number of bytes the search tree may use
+     * @return the solution, or null if none fits the budget
+     */
+    public SearchResult solve_SMA_star(State initial_state, String heuristic, long budget){
+        Board board = initial_state.getBoard();
+        if (!board.packed) {
+            out.println("SMA* needs a board of at most " + Board.MAX_PACKED_CELLS + " cells, use IDA*");
+            return null;
+        }
+        SMAStar search = new SMAStar(this.maxNode, budget, Heuristic.forName(heuristic, board));
+        int[] blanks = search.solve(initial_state);
+        if (blanks == null) {
+            out.println("No solution fits in " + budget + " bytes");
+            return null;
+        }
+        return SearchResult.fromBlanks(initial_state, blanks, search.getMetrics());
+    }
+    /**
+     * Searches with anytime repairing A*: a weighted A* finds a first solution quickly, and later iterations
+     * lower the weight and reuse the earlier search until the solution is proven optimal or the deadline
+     * passes. The first solution is always returned, however long it takes. The result's bound is the
+     * proven ratio of its length to the optimal length.
+     * @param initial_state the initial State object
+     * @param heuristic the name of an admissible heuristic, h2 by default
+     * @param millis the wall-clock milliseconds the search may take once set up
+     * @param weight the weight of the first iteration, at least 1
+     * @return the best solution found, or null if there is none
+     */
+    public SearchResult solve_ARA_star(State initial_state, String heuristic, long millis, double weight){
+        Board board = initial_state.getBoard();
+        if (!board.packed) {
+            out.println("ARA* needs a board of at most " + Board.MAX_PACKED_CELLS + " cells, use IDA*");
+            return null;
+        }
+        ARAStar search = new ARAStar(Heuristic.forName(heuristic, board), weight);
+        int[] blanks = search.solve(initial_state, millis);
+        if (blanks == null) {
+            return null;
+        }
+        SearchResult result = SearchResult.fromBlanks(initial_state, blanks, search.getMetrics());
+        result.bound = search.getBound();
+        return result;
+    }
+    /**
+     * Parses a byte count with an optional k, m or g suffix, as in "64m".
+     * @param str the byte count
+     * @return the number of bytes
+     */
+    static long parseBytes(String str) {
+        String digits = str.toLowerCase();
+        int shift = 0;
+        switch (digits.charAt(digits.length() - 1)) {
+            case 'k':
+                shift = 10;
+                break;
+            case 'm':
+                shift = 20;
+                break;
+            case 'g':
+                shift = 30;
+                break;
+            default:
+                return Long.parseLong(digits);
+        }
+        return Long.parseLong(digits.substring(0, digits.length() - 1)) << shift;
+    }
+    /**
+     * Implements bidirectional breadth-first search, growing layers from the start and from the goal until
+     * they meet. maxNode bounds the expansions of both sides together.
+     * @param initial_state the initial State object representing the puzzle state
+     * @return the solution, or null if none was found
+     */
+    public SearchResult solve_bidirectional(State initial_state){
+        Board board = initial_state.getBoard();
+        if (!board.packed) {
+            out.println("Bidirectional search needs a board of at most " + Board.MAX_PACKED_CELLS + " cells, use IDA*");
+            return null;
+        }
+        BidirectionalSearch search = new BidirectionalSearch(this.maxNode);
+        int[] blanks = search.solve(initial_state);
+        if (blanks == null) {
+            out.println("Unsolvable");
+            return null;
+        }
+        return SearchResult.fromBlanks(initial_state, blanks, search.getMetrics());
+    }
+    /**
+     * Reads an optimal solution out of the precomputed solution database without searching. The table
+     * is memory-mapped from SolutionDatabase.FILE_NAME, and built there first if the file is missing.
+     * @param state the initial State object representing the puzzle state
+     * @return the solution, with one visited state per move, or null if none exists
+     */
+    public SearchResult solve_database(State state){
+        if (state.getBoard() != State.EIGHT) {
+            out.println("The solution database only covers the 3x3 board");
+            return null;
+        }
+        SolutionDatabase database;
+        try {
+            database = SolutionDatabase.shared();
+        } catch (IOException e) {
+            System.err.println("Error loading solution database: " + e.getMessage());
+            return null;
+        }
+        SearchMetrics metrics = new SearchMetrics("DB").start();
+        List<String> moves = database.solve(state);
+        if (moves == null) {
+            metrics.finish(-1);
+            out.println("Unsolvable");
+            return null;
+        }
+        metrics.expanded = moves.size();
+        metrics.finish(moves.size());
+        return new SearchResult(moves, metrics, new State(State.GOAL_TILES, 0));
     }
     public State move(String direction){
-        return new State(this.state.move(direction).toStringState());
+        return this.state.move(direction);
     }
     /**
-     * Implements the beam search algorithm to find a solution to the puzzle.
+     * Implements layered beam search: each layer keeps the k successors of the previous one with the lowest
+     * h1 + h2, and the path is rebuilt from the stored layers once the goal appears. Layers of wide beams
+     * are expanded in parallel.
      * @param state the initial State object representing the puzzle state
      * @param k the beam width parameter for the search
+     * @return the solution, or null if the beam ran dry
      */
-    public void beam_search(State state, int k){
-        int move_count = 0;
-        int node_num = 0;
-        PriorityQueue<State> frontier = new PriorityQueue<>(new Comparator<State>() {
-            @Override
-            public int compare(State o1, State o2) {
-                return o1.getF() - o2.getF();
-            }
-        });
-        HashMap<State, Integer> reached = new HashMap<>();
-        System.out.print("Directions: ");
-        state.setG(0);
-        state.setH(state.getH2() + state.getH1());
-        frontier.add(state);
-        reached.put(state,0);
-        node_num++;
-        move_count++;
-
-        while(!frontier.isEmpty()){
-            if(node_num > maxNode){
-                throw new RuntimeException("MaxNode exceeded");
-            }
-            State curr = frontier.poll();
-            this.state = curr;
-            if(curr.getParent() != null) {
-                if (curr.getCurrent_blank_col() > curr.getParent().getCurrent_blank_col()) {
-                    String move = "right ";
-                    System.out.print(move);
-                    move_count++;
-                }
-                if (curr.getCurrent_blank_col() < curr.getParent().getCurrent_blank_col()) {
-                    String move = "left ";
-                    System.out.print(move);
-                    move_count++;
-
-                }
-                if (curr.getCurrent_blank_row() > curr.getParent().getCurrent_blank_row()) {
-                    String move = "down ";
-                    System.out.print(move);
-                    move_count++;
-                }
-                if (curr.getCurrent_blank_row() < curr.getParent().getCurrent_blank_row()) {
-                    String move = "up ";
-                    System.out.print(move);
-                    move_count++;
-                }
+    public SearchResult beam_search(State state, int k){
+        Board board = state.getBoard();
+        if (!board.packed) {
+            out.println("Beam search needs a board of at most " + Board.MAX_PACKED_CELLS + " cells");
+            return null;
+        }
+        BeamSearch search = new BeamSearch(k, this.maxNode);
+        int[] blanks = search.solve(state);
+        if (blanks == null) {
+            out.println("Failed to find with beam width");
+            return null;
+        }
+        return SearchResult.fromBlanks(state, blanks, search.getMetrics());
+    }
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("-serve")) {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            warmUp();
+            try {
+                serve(new BufferedReader(new InputStreamReader(System.in)), System.out, threads, false);
+            } catch (IOException e) {
+                System.err.println("Error serving commands: " + e.getMessage());
             }
-            if(curr.isGoal()){
-                System.out.print("\n"+"Found goal state");
-                System.out.println("\n" + "Number of tiles moved " + move_count);
-                System.out.println("Number of states visited " + node_num);
-                return;
+            return;
+        }
+        if (args.length > 1 && args[0].equals("-batch")) {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            try {
+                runBatch(args[1], threads);
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + e.getMessage());
             }
-            else {
-                List<State> neighbors = curr.neighbors();
-                ArrayList<State> candidates = new ArrayList<State>();
-                for (State neighbor : neighbors) {
-                    if (neighbor != null && !reached.containsKey(neighbor)) {
-                        neighbor.setG(curr.getG() + 1);
-                        neighbor.setH(neighbor.getH1() + neighbor.getH2());
-                        neighbor.setParent(curr);
-                        candidates.add(neighbor);
-                        reached.put(neighbor, neighbor.getG());
-                        node_num++;
-                    }
-                }
-                if (candidates.size() > k) {
-                    Collections.sort(candidates, new Comparator<State>() {
-                        @Override
-                        public int compare(State o1, State o2) {
-                            return o1.getF() - o2.getF();
-                        }
-                    });
-                    frontier.clear();
-                    for (int i = 0; i < k; i++) {
-                        frontier.add(candidates.get(i));
-                        node_num++;
-                    }
-                } else {
-                    for (State candidate : candidates) {
-                        frontier.add(candidate);
-                        node_num++;
-                    }
-                }
+            return;
+        }
+        if (args.length > 1 && args[0].equals("-binary")) {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            try {
+                long start = System.nanoTime();
+                int solved = solveInstances(args[1], threads, new EightPuzzle().maxNode);
+                System.out.printf("Solved %d instances in %d ms%n", solved, (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + e.getMessage());
             }
+            return;
         }
-        System.out.println("Failed to find with beam width");
-    }
-    public static void main(String[] args) {
         EightPuzzle puzzle = new EightPuzzle("inputh1");
      /*   for(String val: puzzle.commands){
             System.out.println(val);
@@ -0,0 +1,377 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Breadth-first enumeration of a puzzle's state space that keeps its layers on disk instead of in a
+ * reached set, so the space can be far larger than the heap. Each layer is a file of sorted, distinct
+ * packed boards. The next layer is built with delayed duplicate detection: the successors of a layer are
+ * collected in a bounded buffer, and every time it fills it is sorted, deduplicated and written out as a
+ * run. The runs are then merged in one streaming pass, together with the previous two layers, dropping
+ * every board that occurs in either. Moves are reversible, so a successor of layer d can only repeat a
+ * board of layer d - 1 or d, and those two layers are all the history the search needs.
+ *
+ * Memory use is the run buffer plus one I/O buffer per open file; disk use is the runs of one layer
+ * plus the last three layers, or every layer when they are kept. Kept layers can be streamed back with
+ * forEach() to build tables or depth distributions offline:
+ *     java ExternalBFS [width] [maxDepth] [dir] [runBytes] [keep]
+ */
+public class ExternalBFS {
+    static final String DEFAULT_DIR = "bfs_layers"; // where layers and runs are written when none is given
+    static final long DEFAULT_RUN_BYTES = 64L << 20; // successor buffer of the command line
+    private static final int IO_BYTES = 1 << 16; // buffer of each open layer or run file
+
+    private final Board board;
+    private final Path dir;
+    private final int runLongs;
+    private final boolean keepLayers;
+
+    /**
+     * Creates an enumerator.
+     * @param board the board geometry, which must be packed
+     * @param dir the directory for layer and run files, created if needed
+     * @param runBytes the bytes of successors sorted in memory at once
+     * @param keepLayers true to keep every layer file, false to delete each once it is no longer needed
+     */
+    public ExternalBFS(Board board, String dir, long runBytes, boolean keepLayers) {
+        if (!board.packed) {
+            throw new IllegalArgumentException("External BFS needs a board of at most " + Board.MAX_PACKED_CELLS
+                    + " cells");
+        }
+        if (runBytes < 8 * 4 || runBytes / 8 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Run buffer of " + runBytes + " bytes is out of range");
+        }
+        this.board = board;
+        this.dir = Paths.get(dir);
+        this.runLongs = (int) (runBytes / 8);
+        this.keepLayers = keepLayers;
+    }
+
+    /**
+     * Enumerates every board reachable from a start board, one layer at a time.
+     * @param start the packed start board
+     * @param maxDepth the last layer to build
+     * @param report receives a line per finished layer, or null
+     * @return the number of boards in each layer, indexed by depth
+     * @throws IOException if a layer or run file cannot be written or read
+     */
+    public long[] enumerate(long start, int maxDepth, PrintStream report) throws IOException {
+        Files.createDirectories(dir);
+        try (LongWriter writer = new LongWriter(layerFile(0))) {
+            writer.write(start);
+        }
+        List<Long> sizes = new ArrayList<>();
+        sizes.add(1L);
+        if (report != null) {
+            report.println("Depth 0: 1 states");
+        }
+        for (int depth = 0; depth < maxDepth; depth++) {
+            long size = expand(depth);
+            if (!keepLayers && depth >= 1) {
+                Files.deleteIfExists(layerFile(depth - 1));
+            }
+            if (size == 0) {
+                Files.deleteIfExists(layerFile(depth + 1));
+                break;
+            }
+            sizes.add(size);
+            if (report != null) {
+                report.println("Depth " + (depth + 1) + ": " + size + " states");
+            }
+        }
+        long[] res = new long[sizes.size()];
+        for (int d = 0; d < res.length; d++) {
+            res[d] = sizes.get(d);
+        }
+        return res;
+    }
+
+    /**
+     * Streams the boards of a layer written by enumerate(), in ascending order.
+     * @param depth the layer
+     * @param consumer receives each packed board
+     * @throws IOException if the layer file is missing or cannot be read
+     */
+    public void forEach(int depth, LongConsumer consumer) throws IOException {
+        if (!Files.exists(layerFile(depth))) {
+            throw new IOException("Layer " + depth + " is not in " + dir);
+        }
+        try (LongReader reader = new LongReader(layerFile(depth))) {
+            while (reader.hasNext()) {
+                consumer.accept(reader.next());
+            }
+        }
+    }
+
+    private Path layerFile(int depth) {
+        return dir.resolve("layer_" + depth + ".bin");
+    }
+
+    private Path runFile(int depth, int run) {
+        return dir.resolve("run_" + depth + "_" + run + ".bin");
+    }
+
+    /**
+     * Builds layer depth + 1 from layer depth.
+     * @return the number of boards in the new layer
+     */
+    private long expand(int depth) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        long[] buffer = new long[runLongs];
+        int size = 0;
+        try (LongReader layer = new LongReader(layerFile(depth))) {
+            while (layer.hasNext()) {
+                long tiles = layer.next();
+                int blank = State.blankOf(tiles);
+                for (int target : board.successorCells[blank]) {
+                    if (size == buffer.length) {
+                        runs.add(writeRun(buffer, size, depth + 1, runs.size()));
+                        size = 0;
+                    }
+                    buffer[size++] = State.slide(tiles, blank, target);
+                }
+            }
+        }
+        if (size > 0) {
+            runs.add(writeRun(buffer, size, depth + 1, runs.size()));
+        }
+        buffer = null; // the merge only needs the I/O buffers
+        long res = merge(runs, depth);
+        for (Path run : runs) {
+            Files.delete(run);
+        }
+        return res;
+    }
+
+    /**
+     * Sorts a buffer of successors and writes its distinct boards as a run file.
+     */
+    private Path writeRun(long[] buffer, int size, int depth, int run) throws IOException {
+        Arrays.parallelSort(buffer, 0, size);
+        Path res = runFile(depth, run);
+        try (LongWriter writer = new LongWriter(res)) {
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || buffer[i] != buffer[i - 1]) {
+                    writer.write(buffer[i]);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Merges the runs of layer depth + 1 into its layer file, dropping boards repeated across runs and the
+     * boards of layers depth and depth - 1.
+     * @return the number of boards written
+     */
+    private long merge(List<Path> runs, int depth) throws IOException {
+        LongReader[] heap = new LongReader[runs.size()];
+        int size = 0;
+        try (LongReader current = new LongReader(layerFile(depth));
+             LongReader previous = new LongReader(depth > 0 ? layerFile(depth - 1) : null);
+             LongWriter writer = new LongWriter(layerFile(depth + 1))) {
+            for (Path run : runs) {
+                LongReader reader = new LongReader(run);
+                if (reader.hasNext()) {
+                    heap[size] = reader;
+                    siftUp(heap, size++);
+                } else {
+                    reader.close();
+                }
+            }
+            long last = 0; // no board packs to 0, since only the blank is stored as 0
+            while (size > 0) {
+                LongReader top = heap[0];
+                long tiles = top.next();
+                if (top.hasNext()) {
+                    siftDown(heap, 0, size);
+                } else {
+                    top.close();
+                    heap[0] = heap[--size];
+                    if (size > 0) {
+                        siftDown(heap, 0, size);
+                    }
+                }
+                if (tiles == last) {
+                    continue;
+                }
+                last = tiles;
+                if (!current.skipTo(tiles) && !previous.skipTo(tiles)) {
+                    writer.write(tiles);
+                }
+            }
+            return writer.count;
+        } finally {
+            for (int i = 0; i < size; i++) {
+                heap[i].close();
+            }
+        }
+    }
+
+    private static void siftUp(LongReader[] heap, int i) {
+        LongReader reader = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].peek() <= reader.peek()) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = reader;
+    }
+
+    private static void siftDown(LongReader[] heap, int i, int size) {
+        LongReader reader = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].peek() < heap[child].peek()) {
+                child++;
+            }
+            if (reader.peek() <= heap[child].peek()) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = reader;
+    }
+
+    /**
+     * Sequential reader of a file of longs.
+     */
+    private static final class LongReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BYTES);
+        private boolean ended;
+
+        /**
+         * Opens a file, or an empty stream if the path is null.
+         */
+        LongReader(Path path) throws IOException {
+            channel = path != null ? FileChannel.open(path, StandardOpenOption.READ) : null;
+            buffer.limit(0);
+            ended = channel == null;
+        }
+
+        boolean hasNext() throws IOException {
+            if (buffer.remaining() >= 8) {
+                return true;
+            }
+            if (ended) {
+                return false;
+            }
+            buffer.compact();
+            while (buffer.position() < 8 && !ended) {
+                ended = channel.read(buffer) < 0;
+            }
+            buffer.flip();
+            return buffer.remaining() >= 8;
+        }
+
+        /**
+         * Returns the next value without consuming it; hasNext() must be true.
+         */
+        long peek() {
+            return buffer.getLong(buffer.position());
+        }
+
+        long next() throws IOException {
+            if (!hasNext()) {
+                throw new IOException("Read past the end of a layer");
+            }
+            return buffer.getLong();
+        }
+
+        /**
+         * Consumes every value below a target.
+         * @return true if the target itself is next
+         */
+        boolean skipTo(long target) throws IOException {
+            while (hasNext()) {
+                long value = peek();
+                if (value >= target) {
+                    return value == target;
+                }
+                buffer.getLong();
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Sequential writer of a file of longs.
+     */
+    private static final class LongWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BYTES);
+        long count; // values written
+
+        LongWriter(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(long value) throws IOException {
+            if (buffer.remaining() < 8) {
+                flush();
+            }
+            buffer.putLong(value);
+            count++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    /**
+     * Enumerates the space reachable from the goal and prints the size of every layer.
+     * @param args optional width (default 3), last depth, directory, run buffer size in bytes with an
+     * optional k, m or g suffix, and "keep" to keep every layer file
+     */
+    public static void main(String[] args) throws IOException {
+        Board board = Board.of(args.length > 0 ? Integer.parseInt(args[0]) : 3);
+        int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+        String dir = args.length > 2 ? args[2] : DEFAULT_DIR;
+        long runBytes = args.length > 3 ? EightPuzzle.parseBytes(args[3]) : DEFAULT_RUN_BYTES;
+        boolean keep = args.length > 4 && args[4].equals("keep");
+        long start = System.nanoTime();
+        long[] sizes = new ExternalBFS(board, dir, runBytes, keep).enumerate(board.goalTiles, maxDepth, System.out);
+        long total = 0;
+        for (long size : sizes) {
+            total += size;
+        }
+        System.out.printf("%d states in %d layers, %d ms%n", total, sizes.length, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,403 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hash-distributed parallel A* (HDA*) over packed boards. Every board has one owner thread, picked by a
+ * hash of the packed board, and only the owner keeps it in an open list and a reached map. A worker pops
+ * its own best board, expands it, and keeps the successors it owns; the others are batched per owner
+ * and passed over lock-free multi-producer single-consumer queues. No locks are taken on the search path.
+ *
+ * Each worker publishes the best (f, h) it holds, in its open list or in batches not yet sent, and
+ * senders lower the published value of the owner they send to. A worker only expands a board that comes
+ * no later in serial A* order (lowest f, then lowest h) than what every other worker publishes; otherwise
+ * it sends its batches and yields. This keeps the workers on the boards serial A* would expand, so the
+ * search expands about as many boards as serial A* instead of letting one thread run ahead on stale boards
+ * while the owners of better ones wait for their batches. The published values are only hints: a stale
+ * one costs some extra expansions but never optimality.
+ *
+ * Because workers expand boards in parallel, a board can be reached again with a smaller g after it was
+ * expanded; it is then simply reopened. Once a goal is found with cost U, boards with f >= U are pruned,
+ * and the search stops only when no worker holds a board with f < U and no batch is in flight, so U is
+ * optimal for an admissible heuristic. Termination is detected with one counter of busy workers plus
+ * in-flight batches, which can only reach zero when nothing can create more work.
+ */
+public class HDAStar {
+    private static final int NO_PARENT = 0x1F; // parent blank field of the start board
+    private static final int BATCH = 64; // successors buffered per owner before a batch is sent at the latest
+
+    private final int maxNode;
+    private final Heuristic heuristic;
+    private final int threads;
+    private Board board;
+    private Worker[] workers;
+    private final AtomicInteger best = new AtomicInteger(); // cost of the cheapest goal found so far
+    private final AtomicInteger work = new AtomicInteger(); // busy workers plus batches in flight
+    private final AtomicInteger nodes = new AtomicInteger(); // expansions across all workers
+    private volatile boolean finished; // set once work reaches zero or maxNode is exceeded
+    private volatile boolean aborted; // set when maxNode is exceeded
+    private SearchMetrics metrics; // counters of the last solve, summed over the workers
+
+    /**
+     * Creates a solver.
+     * @param maxNode the maximum number of nodes to expand across all threads
+     * @param heuristic an admissible heuristic for packed boards
+     * @param threads the number of worker threads
+     */
+    public HDAStar(int maxNode, Heuristic heuristic, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("HDA* needs at least one thread, got " + threads);
+        }
+        this.maxNode = maxNode;
+        this.heuristic = heuristic;
+        this.threads = threads;
+    }
+
+    /**
+     * Searches for an optimal solution. The board must be packed.
+     * @param start the initial State object
+     * @return the blank cell after each move, starting with the initial blank, or null if none exists
+     * @throws RuntimeException if more than maxNode nodes are expanded
+     */
+    public int[] solve(State start) {
+        board = start.getBoard();
+        best.set(Integer.MAX_VALUE);
+        nodes.set(0);
+        finished = false;
+        aborted = false;
+        metrics = new SearchMetrics("HDA*").start();
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+        long tiles = start.getTiles();
+        int h = heuristic.estimate(tiles);
+        // every worker starts busy; the start board is queued on its owner directly
+        work.set(threads);
+        workers[owner(tiles)].open(tiles, 0, h, NO_PARENT);
+
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            running[i] = new Thread(workers[i], "hda-" + i);
+            running[i].start();
+        }
+        for (Thread thread : running) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                aborted = true;
+                finished = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+        metrics.expanded = nodes.get();
+        metrics.evaluations = 1;
+        for (Worker worker : workers) {
+            metrics.generated += worker.generated;
+            metrics.duplicates += worker.duplicates;
+            metrics.evaluations += worker.evaluations;
+            metrics.peakOpen += worker.peakOpen;
+            metrics.peakClosed += worker.reached.size();
+        }
+        int cost = best.get();
+        metrics.finish(aborted || cost == Integer.MAX_VALUE ? -1 : cost);
+        if (aborted) {
+            throw new RuntimeException("MaxNode exceeded");
+        }
+        if (cost == Integer.MAX_VALUE) {
+            return null;
+        }
+        return path(board.goalTiles, cost);
+    }
+
+    /**
+     * Returns the counters of the last call to solve(). Peak open and closed sizes are the sums of the
+     * workers' own peaks.
+     * @return the metrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Follows parent blanks back from the goal. Each stored g is at least one more than the final g of
+     * its parent, so the walk reaches the start board after exactly cost steps.
+     */
+    private int[] path(long goal, int cost) {
+        int[] res = new int[cost + 1];
+        long curr = goal;
+        int blank = State.blankOf(curr);
+        for (int d = cost; d > 0; d--) {
+            res[d] = blank;
+            int parentBlank = workers[owner(curr)].reached.get(curr, 0) & NO_PARENT;
+            curr = State.slide(curr, blank, parentBlank);
+            blank = parentBlank;
+        }
+        res[0] = blank;
+        return res;
+    }
+
+    /**
+     * Picks the worker that owns a board. Uses the high bits of a multiplicative hash, so the owners'
+     * keys stay spread over the low bits LongIntMap probes with.
+     */
+    private int owner(long tiles) {
+        long mixed = (tiles * 0x9E3779B97F4A7C15L) >>> 32;
+        return (int) ((mixed * threads) >>> 32);
+    }
+
+    /**
+     * Combines f and h into one int that sorts like the open lists do, lowest f and then lowest h first.
+     * h fits in 11 bits, as in a batch's info.
+     */
+    private static int order(int f, int h) {
+        return f << 11 | h;
+    }
+
+    /**
+     * A batch of successors for one owner, linked into that owner's inbox.
+     */
+    private static final class Batch {
+        final long[] boards = new long[BATCH];
+        final int[] info = new int[BATCH]; // g << 16 | h << 5 | parent blank
+        int size;
+        int lowest = Integer.MAX_VALUE; // lowest order() among the boards
+        volatile Batch next;
+    }
+
+    /**
+     * Unbounded multi-producer single-consumer queue of batches. Producers swap themselves in as the tail
+     * and then link the previous tail to the new one; the consumer follows links from a stub head. A batch
+     * whose link is not yet visible is picked up on a later poll.
+     */
+    private static final class Inbox {
+        private final AtomicReference<Batch> tail;
+        private Batch head; // consumer only; the last batch taken, or the initial stub
+
+        Inbox() {
+            head = new Batch();
+            tail = new AtomicReference<>(head);
+        }
+
+        void offer(Batch batch) {
+            Batch prev = tail.getAndSet(batch);
+            prev.next = batch;
+        }
+
+        Batch poll() {
+            Batch next = head.next;
+            if (next != null) {
+                head = next;
+            }
+            return next;
+        }
+
+        boolean isEmpty() {
+            return head.next == null;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final int id;
+        final BucketQueue frontier = new BucketQueue(64);
+        final LongIntMap reached = new LongIntMap(1024); // board to best g << 5 | parent's blank cell
+        final Inbox inbox = new Inbox();
+        final Batch[] outgoing = new Batch[threads];
+        final AtomicInteger lowest = new AtomicInteger(Integer.MAX_VALUE); // published lowest order() held here
+        int pendingOrder = Integer.MAX_VALUE; // lowest order() in outgoing
+        long generated; // successors produced here
+        long duplicates; // successors pruned as the parent, or that arrived no cheaper than this worker's entry
+        long evaluations; // heuristic updates made here
+        long peakOpen;
+
+        Worker(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Records a board reached with cost g if it improves on the best known g, and queues it.
+         */
+        void open(long tiles, int g, int h, int parentBlank) {
+            if (g < reached.get(tiles, Integer.MAX_VALUE) >>> 5) {
+                reached.put(tiles, g << 5 | parentBlank);
+                frontier.push(tiles, g + h, h);
+                if (frontier.size() > peakOpen) {
+                    peakOpen = frontier.size();
+                }
+            } else {
+                duplicates++;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!finished) {
+                drain();
+                int f = frontier.isEmpty() ? Integer.MAX_VALUE : frontier.peekF();
+                int order = frontier.isEmpty() ? Integer.MAX_VALUE : order(f, frontier.peekH());
+                if (order > pendingOrder) {
+                    flush(); // the successors held back are now the best this worker has
+                }
+                lowest.set(Math.min(order, pendingOrder));
+                if (f < best.get() && order > lowestElsewhere()) {
+                    // another worker holds a better board, so let it catch up instead of running ahead
+                    flush();
+                    lowest.set(order);
+                    Thread.yield();
+                    continue;
+                }
+                if (!expand()) {
+                    flush();
+                    lowest.set(Integer.MAX_VALUE);
+                    if (!idle()) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the lowest order() the other workers publish.
+         */
+        private int lowestElsewhere() {
+            int res = Integer.MAX_VALUE;
+            for (Worker worker : workers) {
+                if (worker != this) {
+                    res = Math.min(res, worker.lowest.get());
+                }
+            }
+            return res;
+        }
+
+        private void drain() {
+            Batch batch;
+            while ((batch = inbox.poll()) != null) {
+                for (int i = 0; i < batch.size; i++) {
+                    int info = batch.info[i];
+                    open(batch.boards[i], info >>> 16, (info >>> 5) & 0x7FF, info & NO_PARENT);
+                }
+                work.decrementAndGet();
+            }
+        }
+
+        /**
+         * Expands this worker's best board with f below the incumbent.
+         * @return false if there is no such board
+         */
+        private boolean expand() {
+            long curr;
+            int g;
+            int currH;
+            int entry;
+            do {
+                if (frontier.isEmpty()) {
+                    return false;
+                }
+                curr = frontier.pop();
+                currH = frontier.lastH();
+                g = frontier.lastF() - currH;
+                if (frontier.lastF() >= best.get()) {
+                    frontier.clear(); // the incumbent only decreases, so nothing left here can improve it
+                    return false;
+                }
+                entry = reached.get(curr, 0);
+            } while (g > entry >>> 5); // a cheaper path to this board was queued after this entry
+            if (curr == board.goalTiles) {
+                int prev;
+                while (g < (prev = best.get()) && !best.compareAndSet(prev, g)) {
+                    // retry until this goal is recorded or a cheaper one is
+                }
+                return true;
+            }
+            if (nodes.incrementAndGet() > maxNode) {
+                aborted = true;
+                finished = true;
+                return true;
+            }
+            int blank = State.blankOf(curr);
+            int parentBlank = entry & NO_PARENT;
+            int nextG = g + 1;
+            for (int target : board.successorCells[blank]) {
+                generated++;
+                if (target == parentBlank) {
+                    duplicates++;
+                    continue;
+                }
+                long next = State.slide(curr, blank, target);
+                evaluations++;
+                int h = heuristic.update(currH, next, State.tileAt(curr, target), target, blank);
+                if (nextG + h >= best.get()) {
+                    continue;
+                }
+                int to = owner(next);
+                if (to == id) {
+                    open(next, nextG, h, blank);
+                } else {
+                    send(to, next, nextG << 16 | h << 5 | blank);
+                }
+            }
+            return true;
+        }
+
+        private void send(int to, long tiles, int info) {
+            Batch batch = outgoing[to];
+            if (batch == null) {
+                batch = outgoing[to] = new Batch();
+            }
+            batch.boards[batch.size] = tiles;
+            batch.info[batch.size] = info;
+            int h = (info >>> 5) & 0x7FF;
+            int order = order((info >>> 16) + h, h);
+            batch.lowest = Math.min(batch.lowest, order);
+            pendingOrder = Math.min(pendingOrder, order);
+            if (++batch.size == BATCH) {
+                offer(to, batch);
+                outgoing[to] = null;
+            }
+        }
+
+        private void flush() {
+            for (int to = 0; to < threads; to++) {
+                if (outgoing[to] != null) {
+                    offer(to, outgoing[to]);
+                    outgoing[to] = null;
+                }
+            }
+            pendingOrder = Integer.MAX_VALUE;
+        }
+
+        /**
+         * Hands a batch to its owner and lowers the owner's published order() to the batch's lowest.
+         */
+        private void offer(int to, Batch batch) {
+            work.incrementAndGet();
+            Worker owner = workers[to];
+            owner.inbox.offer(batch);
+            int prev;
+            while (batch.lowest < (prev = owner.lowest.get()) && !owner.lowest.compareAndSet(prev, batch.lowest)) {
+                // retry until the owner publishes this f or a lower one
+            }
+        }
+
+        /**
+         * Waits for more boards after running out of useful work.
+         * @return true if a batch arrived, false if the search is over
+         */
+        private boolean idle() {
+            if (work.decrementAndGet() == 0) {
+                finished = true;
+            }
+            while (!finished) {
+                if (!inbox.isEmpty()) {
+                    // the batch is still counted in work, so the count cannot have reached zero meanwhile
+                    work.incrementAndGet();
+                    return true;
+                }
+                if (work.get() == 0) {
+                    finished = true;
+                }
+                Thread.yield(); // let the busy workers run when threads outnumber cores
+            }
+            return false;
+        }
+    }
+}
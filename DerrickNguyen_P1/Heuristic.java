@@ -0,0 +1,88 @@
+/**
+ * Estimate of the number of moves from a packed board to the goal, used to order the A* open list and
+ * to prune IDA*. Implementations are built for one board size.
+ */
+public interface Heuristic {
+    /**
+     * Estimates the remaining moves for a packed board.
+     * @param tiles the packed board
+     * @return a lower bound on the solution length for admissible heuristics
+     */
+    int estimate(long tiles);
+
+    /**
+     * Returns the estimate after one tile slides into the blank, given the estimate before the move.
+     * Heuristics with a per-move delta override this to avoid rescanning the board; the default
+     * re-evaluates the new board.
+     * @param h the estimate of the board before the move
+     * @param next the packed board after the move
+     * @param tile the tile that moved
+     * @param from the cell the tile left, now the blank
+     * @param to the cell the tile moved into, previously the blank
+     * @return the estimate of next
+     */
+    default int update(int h, long next, int tile, int from, int to) {
+        return estimate(next);
+    }
+
+    /**
+     * Looks up a heuristic by the name used in the solve command.
+     * @param name "h1" for misplaced tiles, "lc" for Manhattan distance plus linear conflicts, "wd" for
+     *             walking distance, "pdb" for the additive pattern database, anything else for Manhattan
+     *             distance (h2)
+     * @param board the geometry of the boards to evaluate
+     * @return the heuristic
+     */
+    static Heuristic forName(String name, Board board) {
+        switch (name) {
+            case "h1":
+                return misplaced(board);
+            case "lc":
+                return LinearConflict.forBoard(board);
+            case "wd":
+                return WalkingDistance.forBoard(board);
+            case "pdb":
+                return PatternDatabase.forBoard(board);
+            default:
+                return manhattan(board);
+        }
+    }
+
+    /**
+     * Misplaced tiles (h1), updated per move from Board.misplacedDelta.
+     * @param board the geometry of the boards to evaluate
+     * @return the heuristic
+     */
+    static Heuristic misplaced(Board board) {
+        return new Heuristic() {
+            @Override
+            public int estimate(long tiles) {
+                return board.getH1(tiles);
+            }
+
+            @Override
+            public int update(int h, long next, int tile, int from, int to) {
+                return h + board.misplacedDelta(tile, from, to);
+            }
+        };
+    }
+
+    /**
+     * Manhattan distance (h2), updated per move from Board.manhattanDelta.
+     * @param board the geometry of the boards to evaluate
+     * @return the heuristic
+     */
+    static Heuristic manhattan(Board board) {
+        return new Heuristic() {
+            @Override
+            public int estimate(long tiles) {
+                return board.getH2(tiles);
+            }
+
+            @Override
+            public int update(int h, long next, int tile, int from, int to) {
+                return h + board.manhattanDelta(tile, from, to);
+            }
+        };
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Evaluates h1 and h2 for many packed boards at once. The boards are transposed into one int column per
+ * cell, so column c holds the tile in cell c of every board, and each heuristic is summed column by
+ * column. The columns are ints rather than bytes because C2 does not vectorize the widening of a byte
+ * load, which made a byte layout several times slower. The inner loops run over the boards with no
+ * branches, table lookups or calls: a tile's goal row is found by a multiply and a shift, and the blank
+ * is masked out arithmetically. HotSpot's superword pass turns loops of this shape into SIMD instructions
+ * on the machines that have them, and they run as plain scalar loops everywhere else, without the
+ * incubator vector module on the module path.
+ *
+ * A batch is not thread-safe; give each thread its own.
+ */
+public class HeuristicBatch {
+    private final Board board;
+    private final int[][] columns; // columns[cell][i] is the tile in that cell of board i
+    private final int rowMultiplier; // tile * rowMultiplier >>> 8 is the tile's goal row
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     * @param board the geometry of every board in the batch, which must be packed
+     * @param capacity the largest number of boards loaded at once
+     */
+    public HeuristicBatch(Board board, int capacity) {
+        if (!board.packed) {
+            throw new IllegalArgumentException("Batch evaluation needs a board of at most " + Board.MAX_PACKED_CELLS
+                    + " cells");
+        }
+        this.board = board;
+        this.columns = new int[board.cells][capacity];
+        // ceil(256 / width) divides exactly for every tile of a packed board
+        this.rowMultiplier = (256 + board.width - 1) / board.width;
+    }
+
+    /**
+     * Returns the number of boards loaded.
+     * @return the batch size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Replaces the batch with a range of packed boards.
+     * @param tiles the packed boards
+     * @param from the index of the first board to load
+     * @param n the number of boards, at most the capacity
+     */
+    public void load(long[] tiles, int from, int n) {
+        if (n > columns[0].length) {
+            throw new IllegalArgumentException("Batch of " + n + " boards exceeds the capacity of " + columns[0].length);
+        }
+        // one cell at a time, so each pass is a straight loop over the boards
+        for (int cell = 0; cell < board.cells; cell++) {
+            int[] column = columns[cell];
+            int shift = 4 * cell;
+            for (int i = 0; i < n; i++) {
+                column[i] = (int) (tiles[from + i] >>> shift) & 0xF;
+            }
+        }
+        size = n;
+    }
+
+    /**
+     * Computes the misplaced-tiles count, blank included as in Board.getH1(), of every loaded board.
+     * @param res receives the count of board i at index i
+     */
+    public void misplaced(int[] res) {
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            res[i] = 0;
+        }
+        for (int cell = 0; cell < board.cells; cell++) {
+            int[] column = columns[cell];
+            for (int i = 0; i < n; i++) {
+                // tile ^ cell is below 32 and non-zero exactly when the tile is out of place
+                res[i] += (column[i] ^ cell) + 31 >>> 5;
+            }
+        }
+    }
+
+    /**
+     * Computes the Manhattan distance of every loaded board.
+     * @param res receives the distance of board i at index i
+     */
+    public void manhattan(int[] res) {
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            res[i] = 0;
+        }
+        addManhattan(res, n);
+    }
+
+    /**
+     * Computes h1 + h2, the beam search score, of every loaded board.
+     * @param res receives the score of board i at index i
+     */
+    public void misplacedPlusManhattan(int[] res) {
+        misplaced(res);
+        addManhattan(res, size);
+    }
+
+    private void addManhattan(int[] res, int n) {
+        int width = board.width;
+        int multiplier = rowMultiplier;
+        for (int cell = 0; cell < board.cells; cell++) {
+            int[] column = columns[cell];
+            int row = cell / width;
+            int col = cell % width;
+            for (int i = 0; i < n; i++) {
+                int tile = column[i];
+                int tileRow = tile * multiplier >>> 8;
+                int dy = tileRow - row;
+                int dx = tile - tileRow * width - col;
+                // abs without Math.abs, whose branch C2 keeps when the profile is biased, which stops
+                // vectorization
+                int distance = (dy ^ dy >> 31) - (dy >> 31) + (dx ^ dx >> 31) - (dx >> 31);
+                // the blank has no distance: the mask is all ones for a tile and zero for the blank
+                res[i] += distance & -(tile + 31 >>> 5);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+/**
+ * Iterative-deepening A* over a single mutable board of any width. Each iteration is a depth-first search that
+ * cuts off nodes whose f = g + h2 exceeds the current bound; the next bound is the smallest f that was
+ * cut off. Moves are made and unmade in place and h2 is updated from the moved tile alone, so memory
+ * is linear in the solution depth and no objects are created per node. A pluggable Heuristic can be
+ * used instead of h2 on packed boards, in which case a packed copy of the board is kept in step.
+ */
+public class IDAStar {
+    private static final int FOUND = -1;
+
+    private final int maxNode;
+    private final Heuristic heuristic; // null to use incrementally updated h2
+    private Board geometry; // successor and Manhattan tables of the board being solved
+    private int[] board; // tile in each cell, 0 for the blank
+    private long tiles; // packed copy of board, kept only when a heuristic is set
+    private int[] path; // path[d] is the blank cell after d moves
+    private int depth; // length of the solution once found
+    private SearchMetrics metrics; // counters across all iterations of the last solve
+
+    /**
+     * Creates a solver that gives up after expanding the given number of nodes.
+     * @param maxNode the maximum number of nodes to expand
+     */
+    public IDAStar(int maxNode) {
+        this(maxNode, null);
+    }
+
+    /**
+     * Creates a solver that orders and prunes with the given heuristic instead of h2.
+     * @param maxNode the maximum number of nodes to expand
+     * @param heuristic an admissible heuristic for packed boards, or null for h2
+     */
+    public IDAStar(int maxNode, Heuristic heuristic) {
+        this.maxNode = maxNode;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Searches for an optimal solution. The board must be solvable.
+     * @param start the initial State object
+     * @return the blank cell after each move, starting with the initial blank, or null if none exists
+     * @throws RuntimeException if more than maxNode nodes are expanded
+     */
+    public int[] solve(State start) {
+        geometry = start.getBoard();
+        board = start.toCells();
+        int h;
+        if (heuristic != null) {
+            tiles = start.getTiles();
+            h = heuristic.estimate(tiles);
+        } else {
+            h = geometry.getH2(board);
+        }
+        int bound = h;
+        metrics = new SearchMetrics("IDA*").start();
+        metrics.evaluations++;
+        while (true) {
+            path = new int[bound + 2];
+            path[0] = start.getBlank();
+            int t = search(start.getBlank(), -1, 0, h, bound);
+            if (t == FOUND) {
+                metrics.finish(depth);
+                return Arrays.copyOf(path, depth + 1);
+            }
+            if (t == Integer.MAX_VALUE) {
+                metrics.finish(-1);
+                return null;
+            }
+            bound = t;
+        }
+    }
+
+    /**
+     * Returns the counters of the last call to solve(). The open list is the current path and there is no
+     * closed set.
+     * @return the metrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Depth-first search below the current board.
+     * @param blank the cell of the blank
+     * @param prevBlank the blank cell before the last move, so that move is not undone immediately
+     * @param g the number of moves made so far
+     * @param h the heuristic value of the current board
+     * @param bound the f limit for this iteration
+     * @return FOUND, or the smallest f that exceeded the bound
+     */
+    private int search(int blank, int prevBlank, int g, int h, int bound) {
+        int f = g + h;
+        if (f > bound) {
+            return f;
+        }
+        if (h == 0 && (heuristic == null || tiles == geometry.goalTiles)) {
+            depth = g;
+            return FOUND;
+        }
+        if (++metrics.expanded > maxNode) {
+            metrics.finish(-1);
+            throw new RuntimeException("MaxNode exceeded");
+        }
+        metrics.open(g + 1);
+        int min = Integer.MAX_VALUE;
+        for (int target : geometry.successorCells[blank]) {
+            metrics.generated++;
+            if (target == prevBlank) {
+                metrics.duplicates++;
+                continue;
+            }
+            metrics.evaluations++;
+            int tile = board[target];
+            int nextH;
+            long before = tiles;
+            if (heuristic != null) {
+                tiles = State.slide(before, blank, target);
+                nextH = heuristic.update(h, tiles, tile, target, blank);
+            } else {
+                nextH = h + geometry.manhattanDelta(tile, target, blank);
+            }
+            board[blank] = tile;
+            board[target] = 0;
+            path[g + 1] = target;
+            int t = search(target, blank, g + 1, nextH, bound);
+            board[target] = tile;
+            board[blank] = 0;
+            tiles = before;
+            if (t == FOUND) {
+                return FOUND;
+            }
+            if (t < min) {
+                min = t;
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,512 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary file of puzzle instances, each with the solve to run on it and room for its solution. A 16-byte
+ * header is followed by fixed-width records, so record i starts at HEADER_BYTES + i * recordBytes and a
+ * batch can be split across threads by index without reading anything before it. The whole file is
+ * memory-mapped; records are read and written in place with absolute gets and puts, so threads working
+ * on different records share nothing.
+ *
+ * Header, big-endian: MAGIC (int), VERSION (short), board width (byte), 0 (byte), path bytes per record
+ * (int), record count (int).
+ *
+ * Record: packed board (long), budget (long), mode (byte), heuristic (byte), solution length (unsigned
+ * short, NO_SOLUTION until one is stored), then the solution at 2 bits per move, four moves per byte,
+ * padded to a multiple of 8 bytes. The budget is the mode's number: the beam width for Beam, the thread
+ * count for HDA*, the bytes for SMA* and the milliseconds for ARA*, where 0 stands for the solve
+ * command's default.
+ *
+ * The main method converts to and from the text command format:
+ *     java InstanceFile pack commands.txt instances.bin [maxMoves]
+ *     java InstanceFile unpack instances.bin commands.txt
+ * and grades a file by Manhattan distance:
+ *     java InstanceFile grade instances.bin
+ * One mapping is limited to 2 GB, a few tens of millions of records.
+ */
+public class InstanceFile {
+    static final int MAGIC = 0x38505A42; // "8PZB"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int NO_SOLUTION = 0xFFFF; // solution length of a record that has none stored
+    static final int DEFAULT_MAX_MOVES = 128; // solution capacity of pack when none is given
+    static final int GRADE_BATCH = 4096; // boards scored at once by grade()
+
+    // record modes, indexing MODES; NONE is a state without a solve command
+    static final int NONE = 0;
+    static final int A_STAR = 1;
+    static final int BEAM = 2;
+    static final int IDA_STAR = 3;
+    static final int HDA_STAR = 4;
+    static final int SMA_STAR = 5;
+    static final int BIDIR = 6;
+    static final int DB = 7;
+    static final int ARA_STAR = 8;
+    static final String[] MODES = {"", "A*", "Beam", "IDA*", "HDA*", "SMA*", "Bidir", "DB", "ARA*"}; // solver names, as in EightPuzzle.solve()
+    static final String[] HEURISTICS = {"h2", "h1", "lc", "wd", "pdb"}; // heuristic names by id
+    private static final String[] DIRECTIONS = {"up", "left", "down", "right"}; // moves by 2-bit code
+
+    private static final int FIXED_BYTES = 20; // record bytes before the solution
+
+    private final MappedByteBuffer map;
+    private final Board board;
+    private final int pathBytes;
+    private final int recordBytes;
+    private final int count;
+
+    private InstanceFile(MappedByteBuffer map, Board board, int pathBytes, int count) {
+        this.map = map;
+        this.board = board;
+        this.pathBytes = pathBytes;
+        this.recordBytes = (FIXED_BYTES + pathBytes + 7) & ~7;
+        this.count = count;
+    }
+
+    /**
+     * Creates a file of empty records and maps it for writing. Every record starts as the goal with mode
+     * NONE and no solution.
+     * @param filename the file to write, replaced if it exists
+     * @param board the geometry of every board in the file, which must be packed
+     * @param count the number of records
+     * @param maxMoves the longest solution a record can hold
+     * @return the mapped file
+     * @throws IOException if the file cannot be written
+     */
+    public static InstanceFile create(String filename, Board board, int count, int maxMoves) throws IOException {
+        if (!board.packed) {
+            throw new IllegalArgumentException("Instance files need a board of at most " + Board.MAX_PACKED_CELLS
+                    + " cells");
+        }
+        int pathBytes = (maxMoves + 3) / 4;
+        long size = HEADER_BYTES + (long) count * ((FIXED_BYTES + pathBytes + 7) & ~7);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(count + " records do not fit in one mapping");
+        }
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw");
+             FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(0, MAGIC);
+            map.putShort(4, (short) VERSION);
+            map.put(6, (byte) board.width);
+            map.putInt(8, pathBytes);
+            map.putInt(12, count);
+            InstanceFile res = new InstanceFile(map, board, pathBytes, count);
+            for (int i = 0; i < count; i++) {
+                res.put(i, board.goalTiles, NONE, 0, 0);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Maps an existing file. Nothing is parsed beyond the header; pages are faulted in on first access.
+     * @param filename the file written by create()
+     * @param writable true to map it for writing solutions back
+     * @return the mapped file
+     * @throws IOException if the file is missing, is not an instance file or has the wrong size
+     */
+    public static InstanceFile open(String filename, boolean writable) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, writable ? "rw" : "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Instance file " + filename + " has " + channel.size() + " bytes");
+            }
+            MappedByteBuffer map = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if (map.getInt(0) != MAGIC || map.getShort(4) != VERSION) {
+                throw new IOException(filename + " is not a version " + VERSION + " instance file");
+            }
+            InstanceFile res = new InstanceFile(map, Board.of(map.get(6)), map.getInt(8), map.getInt(12));
+            if (channel.size() != HEADER_BYTES + (long) res.count * res.recordBytes) {
+                throw new IOException("Instance file " + filename + " has " + channel.size() + " bytes, expected "
+                        + (HEADER_BYTES + (long) res.count * res.recordBytes));
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Returns the number of records.
+     * @return the record count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the geometry shared by every board in the file.
+     * @return the board
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the longest solution a record can hold.
+     * @return the solution capacity in moves
+     */
+    public int maxMoves() {
+        return 4 * pathBytes;
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Record " + i + " of " + count);
+        }
+        return HEADER_BYTES + i * recordBytes;
+    }
+
+    /**
+     * Returns the board of a record.
+     * @param i the record index
+     * @return the packed board
+     */
+    public long tiles(int i) {
+        return map.getLong(offset(i));
+    }
+
+    /**
+     * Returns the board of a record as a State.
+     * @param i the record index
+     * @return a new State object
+     */
+    public State state(int i) {
+        long tiles = tiles(i);
+        return new State(board, tiles, State.blankOf(tiles));
+    }
+
+    /**
+     * Returns the budget of a record.
+     * @param i the record index
+     * @return the beam width, thread count, bytes or milliseconds of the solve, 0 for the default
+     */
+    public long budget(int i) {
+        return map.getLong(offset(i) + 8);
+    }
+
+    /**
+     * Returns the mode of a record.
+     * @param i the record index
+     * @return one of NONE, A_STAR, BEAM, IDA_STAR, HDA_STAR, SMA_STAR, BIDIR, DB or ARA_STAR
+     */
+    public int mode(int i) {
+        return map.get(offset(i) + 16);
+    }
+
+    /**
+     * Returns the heuristic of a record.
+     * @param i the record index
+     * @return the heuristic name, as accepted by Heuristic.forName()
+     */
+    public String heuristic(int i) {
+        return HEURISTICS[map.get(offset(i) + 17)];
+    }
+
+    /**
+     * Stores a record and clears its solution.
+     * @param i the record index
+     * @param tiles the packed board
+     * @param mode one of NONE, A_STAR, BEAM, IDA_STAR, HDA_STAR, SMA_STAR, BIDIR, DB or ARA_STAR
+     * @param heuristic the index of the heuristic in HEURISTICS
+     * @param budget the beam width, thread count, bytes or milliseconds of the solve, 0 for the default
+     */
+    public void put(int i, long tiles, int mode, int heuristic, long budget) {
+        int at = offset(i);
+        map.putLong(at, tiles);
+        map.putLong(at + 8, budget);
+        map.put(at + 16, (byte) mode);
+        map.put(at + 17, (byte) heuristic);
+        map.putShort(at + 18, (short) NO_SOLUTION);
+    }
+
+    /**
+     * Returns the solution stored in a record.
+     * @param i the record index
+     * @return the moves, or null if no solution is stored
+     */
+    public List<String> moves(int i) {
+        int at = offset(i);
+        int length = map.getShort(at + 18) & 0xFFFF;
+        if (length == NO_SOLUTION) {
+            return null;
+        }
+        List<String> res = new ArrayList<>(length);
+        for (int m = 0; m < length; m++) {
+            int code = map.get(at + FIXED_BYTES + m / 4) >> (2 * (m % 4)) & 3;
+            res.add(DIRECTIONS[code]);
+        }
+        return res;
+    }
+
+    /**
+     * Stores the solution of a record.
+     * @param i the record index
+     * @param moves the moves, each "up", "left", "down" or "right"
+     * @throws IllegalArgumentException if the solution is longer than maxMoves()
+     */
+    public void setMoves(int i, List<String> moves) {
+        if (moves.size() > maxMoves()) {
+            throw new IllegalArgumentException("A solution of " + moves.size() + " moves does not fit in "
+                    + maxMoves());
+        }
+        int at = offset(i);
+        for (int b = 0; b < (moves.size() + 3) / 4; b++) {
+            int packed = 0;
+            for (int m = 4 * b; m < Math.min(moves.size(), 4 * b + 4); m++) {
+                packed |= code(moves.get(m)) << (2 * (m % 4));
+            }
+            map.put(at + FIXED_BYTES + b, (byte) packed);
+        }
+        map.putShort(at + 18, (short) moves.size());
+    }
+
+    private static int code(String direction) {
+        switch (direction) {
+            case "up":
+                return 0;
+            case "left":
+                return 1;
+            case "down":
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    /**
+     * Writes the records changed through this mapping back to the file.
+     */
+    public void force() {
+        map.force();
+    }
+
+    /**
+     * Formats a record as text commands: a setState, followed by the solve command unless the mode is NONE.
+     * @param i the record index
+     * @return the command lines, each ending in a newline
+     */
+    public String toCommands(int i) {
+        StringBuilder res = new StringBuilder("setState \"");
+        long tiles = tiles(i);
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (cell > 0 && (board.cells > 10 || cell % board.width == 0)) {
+                res.append(' ');
+            }
+            int tile = State.tileAt(tiles, cell);
+            if (tile == 0) {
+                res.append('b');
+            } else {
+                res.append(tile);
+            }
+        }
+        res.append("\"\n");
+        int mode = mode(i);
+        long budget = budget(i);
+        if (mode == A_STAR) {
+            res.append("solve ").append(heuristic(i)).append('\n');
+        } else if (mode == BEAM) {
+            res.append("solve Beam ").append(budget).append('\n');
+        } else if (mode == IDA_STAR || mode == HDA_STAR || mode == SMA_STAR || mode == ARA_STAR) {
+            res.append("solve ").append(MODES[mode]).append(' ').append(heuristic(i));
+            if (budget > 0) {
+                res.append(' ').append(budget);
+            }
+            res.append('\n');
+        } else if (mode != NONE) {
+            res.append("solve ").append(MODES[mode]).append('\n');
+        }
+        return res.toString();
+    }
+
+    /**
+     * Converts a text command file to an instance file. The state is followed through setState, move and
+     * randomizeState, and every solve becomes a record of the state it starts from; after a solve the
+     * state is the goal, as in a run. A state that is replaced before any solve becomes a NONE record.
+     * printState, printCache and maxNodes have no record and are dropped.
+     * @param textFile the command file
+     * @param binFile the instance file to write
+     * @param maxMoves the longest solution a record can hold
+     * @return the number of records written
+     * @throws IOException if a file cannot be read or written
+     * @throws IllegalArgumentException if the boards differ in size, do not pack, or a command cannot be stored
+     */
+    public static int pack(String textFile, String binFile, int maxMoves) throws IOException {
+        Records records = new Records();
+        Board board = null;
+        State state = null;
+        boolean pending = false; // the current state has no record yet
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(textFile)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals("setState")) {
+                    State next = new State(String.join(" ", Arrays.copyOfRange(tokens, 1, tokens.length)));
+                    if (board != null && next.getBoard() != board) {
+                        throw new IllegalArgumentException("Every board of an instance file must have the same size");
+                    }
+                    if (pending) {
+                        records.add(state.getTiles(), NONE, 0, 0);
+                    }
+                    board = next.getBoard();
+                    state = next;
+                    pending = true;
+                } else if (tokens[0].equals("move") && state != null) {
+                    State next = state.move(tokens[1]);
+                    if (next != null) {
+                        state = next;
+                        pending = true;
+                    }
+                } else if (tokens[0].equals("randomizeState")) {
+                    state = EightPuzzle.randomizeState(board != null ? board : State.EIGHT, Integer.parseInt(tokens[1]));
+                    board = state.getBoard();
+                    pending = true;
+                } else if (tokens[0].equals("solve") && state != null) {
+                    int mode = Arrays.asList(MODES).indexOf(tokens[1]);
+                    int heuristic = 0;
+                    long budget = 0;
+                    if (mode <= NONE) {
+                        mode = A_STAR;
+                        heuristic = heuristicId(tokens[1]);
+                    } else if (mode == BEAM) {
+                        budget = Integer.parseInt(tokens[2]);
+                    } else if (mode == IDA_STAR || mode == HDA_STAR || mode == SMA_STAR || mode == ARA_STAR) {
+                        heuristic = tokens.length > 2 ? heuristicId(tokens[2]) : 0;
+                        if (tokens.length > 3) {
+                            budget = mode == SMA_STAR ? EightPuzzle.parseBytes(tokens[3]) : Integer.parseInt(tokens[3]);
+                        }
+                    }
+                    records.add(state.getTiles(), mode, heuristic, budget);
+                    state = State.goal(board);
+                    pending = false;
+                }
+            }
+        }
+        if (pending) {
+            records.add(state.getTiles(), NONE, 0, 0);
+        }
+        InstanceFile file = create(binFile, board != null ? board : State.EIGHT, records.size, maxMoves);
+        for (int i = 0; i < records.size; i++) {
+            file.put(i, records.tiles[i], records.modes[i], records.heuristics[i], records.budgets[i]);
+        }
+        file.force();
+        return records.size;
+    }
+
+    private static int heuristicId(String name) {
+        int res = Arrays.asList(HEURISTICS).indexOf(name);
+        if (res < 0) {
+            throw new IllegalArgumentException("Unknown heuristic " + name + ", expected one of "
+                    + String.join(", ", HEURISTICS));
+        }
+        return res;
+    }
+
+    /**
+     * Converts an instance file back to text commands. Stored solutions are not part of the text format
+     * and are left out.
+     * @param binFile the instance file
+     * @param textFile the command file to write
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void unpack(String binFile, String textFile) throws IOException {
+        InstanceFile file = open(binFile, false);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(textFile)))) {
+            for (int i = 0; i < file.size(); i++) {
+                writer.write(file.toCommands(i));
+            }
+        }
+    }
+
+    /**
+     * Grades every record by its Manhattan distance, a lower bound on its solution length, scoring the
+     * boards a batch at a time with HeuristicBatch.
+     * @param binFile the instance file
+     * @return the number of records with each Manhattan distance, indexed by the distance
+     * @throws IOException if the file cannot be read
+     */
+    public static long[] grade(String binFile) throws IOException {
+        InstanceFile file = open(binFile, false);
+        Board board = file.getBoard();
+        int batchSize = Math.max(1, Math.min(file.size(), GRADE_BATCH));
+        HeuristicBatch batch = new HeuristicBatch(board, batchSize);
+        long[] tiles = new long[batchSize];
+        int[] scores = new int[batchSize];
+        long[] res = new long[(board.cells - 1) * 2 * (board.width - 1) + 1]; // no tile is further than 2 * (width - 1)
+        for (int from = 0; from < file.size(); from += batchSize) {
+            int n = Math.min(batchSize, file.size() - from);
+            for (int i = 0; i < n; i++) {
+                tiles[i] = file.tiles(from + i);
+            }
+            batch.load(tiles, 0, n);
+            batch.manhattan(scores);
+            for (int i = 0; i < n; i++) {
+                res[scores[i]]++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Converts between the text and binary formats, or grades an instance file.
+     * @param args "pack" with a command file, an instance file and an optional solution capacity,
+     * "unpack" with an instance file and a command file, or "grade" with an instance file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("pack")) {
+            int maxMoves = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_MOVES;
+            int size = pack(args[1], args[2], maxMoves);
+            System.out.println("Wrote " + size + " instances to " + args[2]);
+        } else if (args.length >= 3 && args[0].equals("unpack")) {
+            unpack(args[1], args[2]);
+            System.out.println("Wrote commands to " + args[2]);
+        } else if (args.length >= 2 && args[0].equals("grade")) {
+            long[] counts = grade(args[1]);
+            for (int h = 0; h < counts.length; h++) {
+                if (counts[h] > 0) {
+                    System.out.println("h2 " + h + ": " + counts[h]);
+                }
+            }
+        } else {
+            System.out.println("Usage: InstanceFile pack commands.txt instances.bin [maxMoves]");
+            System.out.println("       InstanceFile unpack instances.bin commands.txt");
+            System.out.println("       InstanceFile grade instances.bin");
+        }
+    }
+
+    /**
+     * Growable columns of records, collected before the file size is known.
+     */
+    private static final class Records {
+        long[] tiles = new long[1024];
+        long[] budgets = new long[1024];
+        byte[] modes = new byte[1024];
+        byte[] heuristics = new byte[1024];
+        int size;
+
+        void add(long tiles, int mode, int heuristic, long budget) {
+            if (size == this.tiles.length) {
+                this.tiles = Arrays.copyOf(this.tiles, 2 * size);
+                budgets = Arrays.copyOf(budgets, 2 * size);
+                modes = Arrays.copyOf(modes, 2 * size);
+                heuristics = Arrays.copyOf(heuristics, 2 * size);
+            }
+            this.tiles[size] = tiles;
+            budgets[size] = budget;
+            modes[size] = (byte) mode;
+            heuristics[size++] = (byte) heuristic;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Manhattan distance plus linear conflicts. Two tiles in their goal row (or column) but in the wrong
+ * order relative to each other cannot pass without one of them leaving the line, which costs two
+ * moves beyond Manhattan distance. For each line, the fewest tiles that must leave is the number of
+ * goal-line tiles minus the longest increasing run of their goal positions; that count is precomputed
+ * for every possible line signature, so evaluating a line is one table read.
+ */
+public class LinearConflict implements Heuristic {
+    private static final LinearConflict[] CACHE = new LinearConflict[Board.MAX_WIDTH + 1];
+
+    private final Board board;
+    private final int radix; // width + 1 digits per cell: 0 for a tile of another line, 1 + goal position otherwise
+    private final byte[] lineCost; // extra moves for each line signature
+
+    private LinearConflict(Board board) {
+        this.board = board;
+        this.radix = board.width + 1;
+        int signatures = 1;
+        for (int i = 0; i < board.width; i++) {
+            signatures *= radix;
+        }
+        this.lineCost = new byte[signatures];
+        int[] digits = new int[board.width];
+        for (int signature = 0; signature < signatures; signature++) {
+            int rest = signature;
+            for (int i = board.width - 1; i >= 0; i--) {
+                digits[i] = rest % radix;
+                rest /= radix;
+            }
+            lineCost[signature] = (byte) (2 * (count(digits) - longestIncreasing(digits)));
+        }
+    }
+
+    /**
+     * Returns the shared instance for a board size.
+     * @param board the board geometry
+     * @return the linear-conflict heuristic
+     */
+    static synchronized LinearConflict forBoard(Board board) {
+        if (CACHE[board.width] == null) {
+            CACHE[board.width] = new LinearConflict(board);
+        }
+        return CACHE[board.width];
+    }
+
+    @Override
+    public int estimate(long tiles) {
+        int res = board.getH2(tiles);
+        for (int line = 0; line < board.width; line++) {
+            res += rowCost(tiles, line) + columnCost(tiles, line);
+        }
+        return res;
+    }
+
+    /**
+     * Updates Manhattan distance from the move delta and re-reads only the two lines the tile crossed
+     * between: the columns for a horizontal move, the rows for a vertical one. Conflicts along the line
+     * the tile moved in are unchanged because only the blank swapped places with it.
+     */
+    @Override
+    public int update(int h, long next, int tile, int from, int to) {
+        long prev = State.slide(next, from, to);
+        int res = h + board.manhattanDelta(tile, from, to);
+        int width = board.width;
+        if (from / width == to / width) {
+            int a = from % width;
+            int b = to % width;
+            res += columnCost(next, a) + columnCost(next, b) - columnCost(prev, a) - columnCost(prev, b);
+        } else {
+            int a = from / width;
+            int b = to / width;
+            res += rowCost(next, a) + rowCost(next, b) - rowCost(prev, a) - rowCost(prev, b);
+        }
+        return res;
+    }
+
+    private int rowCost(long tiles, int row) {
+        int width = board.width;
+        int signature = 0;
+        for (int col = 0; col < width; col++) {
+            int tile = State.tileAt(tiles, row * width + col);
+            int digit = tile != 0 && tile / width == row ? tile % width + 1 : 0;
+            signature = signature * radix + digit;
+        }
+        return lineCost[signature];
+    }
+
+    private int columnCost(long tiles, int col) {
+        int width = board.width;
+        int signature = 0;
+        for (int row = 0; row < width; row++) {
+            int tile = State.tileAt(tiles, row * width + col);
+            int digit = tile != 0 && tile % width == col ? tile / width + 1 : 0;
+            signature = signature * radix + digit;
+        }
+        return lineCost[signature];
+    }
+
+    private static int count(int[] digits) {
+        int res = 0;
+        for (int digit : digits) {
+            if (digit != 0) {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Length of the longest strictly increasing subsequence of the non-zero digits.
+     */
+    private static int longestIncreasing(int[] digits) {
+        int[] best = new int[digits.length];
+        int res = 0;
+        for (int i = 0; i < digits.length; i++) {
+            if (digits[i] == 0) {
+                continue;
+            }
+            best[i] = 1;
+            for (int j = 0; j < i; j++) {
+                if (digits[j] != 0 && digits[j] < digits[i] && best[j] + 1 > best[i]) {
+                    best[i] = best[j] + 1;
+                }
+            }
+            res = Math.max(res, best[i]);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,367 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Disjoint additive pattern-database heuristic. The tiles are split into disjoint patterns; for each
+ * pattern a table gives, for every placement of its tiles, the fewest moves of those tiles needed to
+ * bring them home, with the other tiles treated as indistinguishable. Because each table only counts
+ * moves of its own tiles, the values of all patterns add up to an admissible estimate that dominates
+ * Manhattan distance.
+ *
+ * Tables are built by a breadth-first search backwards from the goal over (pattern placement, blank
+ * cell) pairs, where moving a non-pattern tile costs nothing. They are stored one byte per placement in
+ * a single file that is memory-mapped when loaded.
+ */
+public class PatternDatabase implements Heuristic {
+    private static final int MAGIC = 0x50444231; // "PDB1"
+    private static final PatternDatabase[] LOADED = new PatternDatabase[Board.MAX_WIDTH + 1];
+
+    private final Board board;
+    private final int[][] patterns; // tiles of each pattern
+    private final ByteBuffer[] tables; // one byte per placement of each pattern's tiles
+
+    private PatternDatabase(Board board, int[][] patterns, ByteBuffer[] tables) {
+        this.board = board;
+        this.patterns = patterns;
+        this.tables = tables;
+    }
+
+    /**
+     * Returns the default partition for a board size: 4-4 for the 8-puzzle and 6-6-3 for the 15-puzzle.
+     * @param board the board geometry
+     * @return the tiles of each pattern
+     */
+    static int[][] defaultPartition(Board board) {
+        switch (board.width) {
+            case 3:
+                return new int[][] {{1, 2, 3, 4}, {5, 6, 7, 8}};
+            case 4:
+                // left two columns, right two columns below the top row, and the top row
+                return new int[][] {{4, 5, 8, 9, 12, 13}, {6, 7, 10, 11, 14, 15}, {1, 2, 3}};
+            default:
+                throw new IllegalArgumentException("No default pattern partition for a " + board.width + "x"
+                        + board.width + " board");
+        }
+    }
+
+    /**
+     * Returns the file the default tables for a board size are kept in.
+     * @param board the board geometry
+     * @return the file name
+     */
+    static String defaultFileName(Board board) {
+        return "pdb_" + board.width + "x" + board.width + ".bin";
+    }
+
+    /**
+     * Returns the default pattern database for a board size, mapping it from its default file or building
+     * that file first. The result is shared by later calls.
+     * @param board the board geometry
+     * @return the pattern database
+     */
+    static synchronized PatternDatabase forBoard(Board board) {
+        if (LOADED[board.width] == null) {
+            try {
+                LOADED[board.width] = loadOrBuild(board, defaultPartition(board), defaultFileName(board));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error loading pattern database: " + e.getMessage(), e);
+            }
+        }
+        return LOADED[board.width];
+    }
+
+    /**
+     * Maps the tables from the given file, building and writing it first if it does not exist.
+     * @param board the board geometry
+     * @param patterns the tiles of each pattern, used when building
+     * @param filename the table file
+     * @return the pattern database
+     * @throws IOException if the file cannot be written or read
+     */
+    public static PatternDatabase loadOrBuild(Board board, int[][] patterns, String filename) throws IOException {
+        if (!new File(filename).exists()) {
+            write(board, patterns, filename);
+        }
+        return load(filename);
+    }
+
+    /**
+     * Builds the table of every pattern and writes them to a file: a header with the board width and the
+     * tiles of each pattern, followed by each table.
+     * @param board the board geometry
+     * @param patterns the tiles of each pattern, which must be disjoint
+     * @param filename the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Board board, int[][] patterns, String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw");
+             FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(headerSize(patterns));
+            header.putInt(MAGIC).putInt(board.width).putInt(patterns.length);
+            for (int[] pattern : patterns) {
+                header.putInt(pattern.length);
+                for (int tile : pattern) {
+                    header.putInt(tile);
+                }
+            }
+            header.flip();
+            writeFully(channel, header);
+            for (int[] pattern : patterns) {
+                writeFully(channel, ByteBuffer.wrap(build(board, pattern)));
+            }
+        }
+    }
+
+    /**
+     * Maps a table file written by write() read-only.
+     * @param filename the table file
+     * @return the pattern database
+     * @throws IOException if the file is missing or malformed
+     */
+    public static PatternDatabase load(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a pattern database");
+            }
+            Board board = Board.of(map.getInt());
+            int[][] patterns = new int[map.getInt()][];
+            for (int p = 0; p < patterns.length; p++) {
+                patterns[p] = new int[map.getInt()];
+                for (int i = 0; i < patterns[p].length; i++) {
+                    patterns[p][i] = map.getInt();
+                }
+            }
+            ByteBuffer[] tables = new ByteBuffer[patterns.length];
+            int offset = map.position();
+            for (int p = 0; p < patterns.length; p++) {
+                int size = placements(board.cells, patterns[p].length);
+                if (offset + (long) size > map.capacity()) {
+                    throw new IOException(filename + " is truncated");
+                }
+                tables[p] = map.duplicate().position(offset).limit(offset + size).slice();
+                offset += size;
+            }
+            return new PatternDatabase(board, patterns, tables);
+        }
+    }
+
+    /**
+     * Sums the table values of every pattern for a packed board.
+     * @param tiles the packed board
+     * @return the additive pattern-database estimate
+     */
+    @Override
+    public int estimate(long tiles) {
+        // invert the board so the cell of tile t sits in nibble t
+        long where = 0;
+        for (int cell = 0; cell < board.cells; cell++) {
+            where |= (long) cell << (4 * State.tileAt(tiles, cell));
+        }
+        int res = 0;
+        for (int p = 0; p < patterns.length; p++) {
+            res += tables[p].get(rankPlacement(where, patterns[p], board.cells)) & 0xFF;
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of ways to place k distinct tiles in n cells, n! / (n-k)!.
+     */
+    static int placements(int n, int k) {
+        long res = 1;
+        for (int i = 0; i < k; i++) {
+            res *= n - i;
+        }
+        if (res > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A pattern of " + k + " tiles on " + n + " cells is too large");
+        }
+        return (int) res;
+    }
+
+    /**
+     * Ranks the cells of a pattern's tiles in mixed radix n, n-1, ..., each digit counting the free cells
+     * below the tile's cell.
+     * @param where packed cell of each tile, tile t in nibble t
+     * @param pattern the tiles of the pattern
+     * @param n the number of cells on the board
+     * @return the placement index
+     */
+    static int rankPlacement(long where, int[] pattern, int n) {
+        int res = 0;
+        int used = 0;
+        for (int i = 0; i < pattern.length; i++) {
+            int cell = State.tileAt(where, pattern[i]);
+            res = res * (n - i) + cell - Integer.bitCount(used & ((1 << cell) - 1));
+            used |= 1 << cell;
+        }
+        return res;
+    }
+
+    /**
+     * Ranks pattern tile cells given directly as an array.
+     */
+    private static int rankPlacement(int[] cells, int n) {
+        int res = 0;
+        int used = 0;
+        for (int i = 0; i < cells.length; i++) {
+            int cell = cells[i];
+            res = res * (n - i) + cell - Integer.bitCount(used & ((1 << cell) - 1));
+            used |= 1 << cell;
+        }
+        return res;
+    }
+
+    /**
+     * Inverts rankPlacement(), writing the cell of each pattern tile into cells.
+     */
+    private static void unrankPlacement(int index, int[] cells, int n) {
+        int k = cells.length;
+        for (int i = k - 1; i >= 0; i--) {
+            cells[i] = index % (n - i);
+            index /= n - i;
+        }
+        int unused = (1 << n) - 1;
+        for (int i = 0; i < k; i++) {
+            int bits = unused;
+            for (int j = 0; j < cells[i]; j++) {
+                bits &= bits - 1;
+            }
+            cells[i] = Integer.numberOfTrailingZeros(bits);
+            unused &= ~(1 << cells[i]);
+        }
+    }
+
+    /**
+     * Builds one pattern's table with a layered breadth-first search from the goal over (placement, blank)
+     * pairs. Within a layer the blank swaps freely with non-pattern tiles; moving a pattern tile adds one
+     * and defers the pair to the next layer. The first layer that reaches a placement with any blank cell
+     * is that placement's value.
+     * @param board the board geometry
+     * @param pattern the tiles of the pattern
+     * @return one byte per placement
+     */
+    static byte[] build(Board board, int[] pattern) {
+        int n = board.cells;
+        int count = placements(n, pattern.length);
+        if ((long) count * n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A pattern of " + pattern.length + " tiles is too large to build");
+        }
+        byte[] table = new byte[count];
+        Arrays.fill(table, (byte) 0xFF);
+        long[] visited = new long[(int) (((long) count * n + 63) >>> 6)]; // one bit per (placement, blank)
+        int[] cells = pattern.clone(); // tile t starts in goal cell t
+        int[] owner = new int[n]; // pattern index of the tile in each cell, -1 for other tiles
+        IntQueue current = new IntQueue();
+        IntQueue next = new IntQueue();
+
+        int start = rankPlacement(cells, n) * n; // blank in cell 0
+        visited[start >>> 6] |= 1L << start;
+        current.add(start);
+        for (int depth = 0; !current.isEmpty(); depth++) {
+            while (!current.isEmpty()) {
+                int pair = current.poll();
+                int index = pair / n;
+                int blank = pair % n;
+                if ((table[index] & 0xFF) == 0xFF) {
+                    table[index] = (byte) depth;
+                }
+                unrankPlacement(index, cells, n);
+                Arrays.fill(owner, -1);
+                for (int i = 0; i < cells.length; i++) {
+                    owner[cells[i]] = i;
+                }
+                for (int target : board.successorCells[blank]) {
+                    int i = owner[target];
+                    if (i < 0) {
+                        int same = index * n + target;
+                        if ((visited[same >>> 6] & (1L << same)) == 0) {
+                            visited[same >>> 6] |= 1L << same;
+                            current.add(same);
+                        }
+                    } else {
+                        cells[i] = blank;
+                        int moved = rankPlacement(cells, n) * n + target;
+                        cells[i] = target;
+                        if ((visited[moved >>> 6] & (1L << moved)) == 0) {
+                            next.add(moved);
+                        }
+                    }
+                }
+            }
+            // pairs reached for free in this layer win over the same pairs reached with one more move
+            while (!next.isEmpty()) {
+                int pair = next.poll();
+                if ((visited[pair >>> 6] & (1L << pair)) == 0) {
+                    visited[pair >>> 6] |= 1L << pair;
+                    current.add(pair);
+                }
+            }
+        }
+        return table;
+    }
+
+    private static int headerSize(int[][] patterns) {
+        int res = 3 * Integer.BYTES;
+        for (int[] pattern : patterns) {
+            res += (1 + pattern.length) * Integer.BYTES;
+        }
+        return res;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Growable FIFO of ints for the breadth-first search.
+     */
+    private static final class IntQueue {
+        private int[] items = new int[1024];
+        private int head;
+        private int tail;
+
+        void add(int item) {
+            if (tail == items.length) {
+                if (head > items.length / 2) {
+                    System.arraycopy(items, head, items, 0, tail - head);
+                } else {
+                    items = Arrays.copyOf(items, items.length << 1);
+                    System.arraycopy(items, head, items, 0, tail - head);
+                }
+                tail -= head;
+                head = 0;
+            }
+            items[tail++] = item;
+        }
+
+        int poll() {
+            return items[head++];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+
+    /**
+     * Builds the default tables for a board size offline.
+     * @param args the board width, 3 or 4, and optionally the output file name
+     */
+    public static void main(String[] args) throws IOException {
+        Board board = Board.of(args.length > 0 ? Integer.parseInt(args[0]) : 4);
+        String filename = args.length > 1 ? args[1] : defaultFileName(board);
+        write(board, defaultPartition(board), filename);
+        System.out.println("Wrote pattern database to " + filename);
+    }
+}
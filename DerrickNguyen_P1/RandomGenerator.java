@@ -1,59 +1,234 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
+/**
+ * Generates random solvable puzzle instances as setState commands, one per line, so the output can be
+ * run directly as a command file. Without arguments a single board is drawn and saved to FILE_NAME; the
+ * bulk modes stream any number of reproducible instances:
+ *     java RandomGenerator uniform count [width] [seed] [file]
+ *     java RandomGenerator depth min max perDepth [seed] [file]
+ * Uniform mode draws every solvable board with the same probability. Depth mode draws 8-puzzle boards
+ * uniformly among those whose optimal solution has each length from min to max, perDepth of each, in
+ * order of depth.
+ *
+ * Instances are generated in chunks of CHUNK on the common ForkJoinPool. Every chunk gets its own
+ * generator, split from the seeded root in chunk order, so the output depends only on the seed and not
+ * on the number of threads. Each chunk is encoded straight into a byte buffer and the buffers are written
+ * to the file channel in order.
+ */
 public class RandomGenerator {
     private static final String FILE_NAME = "random_input_state.txt";
     private static final int PUZZLE_SIZE = 3;
+    static final int CHUNK = 1 << 14; // instances per parallel task
+    private static final byte[] PREFIX = "setState \"".getBytes(StandardCharsets.US_ASCII);
 
-    public static void main(String[] args) {
-        // Generate a random initial state
-        List<Integer> numbers = generateRandomNumbers();
-        String state = convertNumbersToString(numbers);
-        System.out.println("Generated random state: " + state);
+    /**
+     * Fills the cells of one instance.
+     */
+    interface Sampler {
+        /**
+         * Draws the instance with the given index.
+         * @param rand the generator of the instance's chunk
+         * @param index the position of the instance in the output
+         * @param cells receives the tile in each cell, 0 for the blank
+         */
+        void sample(SplittableRandom rand, int index, int[] cells);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            // Generate a random initial state
+            Board board = Board.of(PUZZLE_SIZE);
+            int[] cells = new int[board.cells];
+            uniform(board).sample(new SplittableRandom(), 0, cells);
+            String state = convertNumbersToString(board, cells);
+            System.out.println("Generated random state: " + state);
+
+            // Save the state to a file
+            saveStateToFile(state);
+            System.out.println("Saved state to file: " + FILE_NAME);
+            return;
+        }
+        long start = System.nanoTime();
+        int count;
+        String filename;
+        if (args[0].equals("uniform")) {
+            count = Integer.parseInt(args[1]);
+            Board board = Board.of(args.length > 2 ? Integer.parseInt(args[2]) : PUZZLE_SIZE);
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+            filename = args.length > 4 ? args[4] : FILE_NAME;
+            generate(board, count, uniform(board), seed, filename);
+        } else if (args[0].equals("depth")) {
+            int min = Integer.parseInt(args[1]);
+            int max = Integer.parseInt(args[2]);
+            int perDepth = Integer.parseInt(args[3]);
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+            filename = args.length > 5 ? args[5] : FILE_NAME;
+            count = Math.multiplyExact(max - min + 1, perDepth);
+            generate(State.EIGHT, count, stratified(min, max, perDepth), seed, filename);
+        } else {
+            throw new IllegalArgumentException("Unknown mode " + args[0] + ", expected uniform or depth");
+        }
+        System.out.printf("Wrote %d states to %s in %d ms%n", count, filename,
+                (System.nanoTime() - start) / 1_000_000);
+    }
 
-        // Save the state to a file
-        saveStateToFile(state);
-        System.out.println("Saved state to file: " + FILE_NAME);
+    /**
+     * Returns a sampler that draws every solvable board of the given size with the same probability.
+     * 8-puzzle boards are unranked from a uniform permutation rank, larger ones are shuffled. A board with
+     * the wrong parity has the tiles in its first two non-blank cells swapped, which flips the parity and
+     * pairs every unsolvable board with exactly one solvable board, so no draw is rejected.
+     * @param board the board geometry
+     * @return the sampler
+     */
+    static Sampler uniform(Board board) {
+        return (rand, index, cells) -> {
+            if (board == State.EIGHT) {
+                long tiles = State.unrank(rand.nextInt(State.PERMUTATIONS));
+                for (int cell = 0; cell < cells.length; cell++) {
+                    cells[cell] = State.tileAt(tiles, cell);
+                }
+            } else {
+                for (int cell = 0; cell < cells.length; cell++) {
+                    int other = rand.nextInt(cell + 1);
+                    cells[cell] = cells[other];
+                    cells[other] = cell;
+                }
+            }
+            if (!board.isSolvable(cells)) {
+                int first = cells[0] != 0 ? 0 : 1;
+                int second = cells[first + 1] != 0 ? first + 1 : first + 2;
+                int tile = cells[first];
+                cells[first] = cells[second];
+                cells[second] = tile;
+            }
+        };
     }
 
     /**
-     * Generates a list of random numbers for the Eight Puzzle problem
-     * @return A list of integers representing the state
+     * Returns a sampler of 8-puzzle boards grouped by optimal solution length: instances 0 .. perDepth-1
+     * are drawn uniformly among the boards at depth min, the next perDepth at depth min + 1, and so on.
+     * The exact depths come from the SolutionDatabase table, built once in memory.
+     * @param min the smallest depth
+     * @param max the largest depth
+     * @param perDepth the number of instances of each depth
+     * @return the sampler
+     * @throws IllegalArgumentException if some depth in the range has no boards
      */
-    private static List<Integer> generateRandomNumbers() {
-        List<Integer> numbers = new ArrayList<>();
-        for (int i = 0; i < PUZZLE_SIZE * PUZZLE_SIZE; i++) {
-            numbers.add(i);
+    static Sampler stratified(int min, int max, int perDepth) {
+        byte[] dist = SolutionDatabase.build();
+        int[] counts = new int[SolutionDatabase.UNREACHABLE + 1];
+        for (byte d : dist) {
+            counts[d & 0xFF]++;
+        }
+        if (min < 0 || min > max || max >= SolutionDatabase.UNREACHABLE || counts[min] == 0 || counts[max] == 0) {
+            throw new IllegalArgumentException("No 8-puzzle boards between depths " + min + " and " + max);
         }
-        Collections.shuffle(numbers, new Random());
-        return numbers;
+        int[][] byDepth = new int[max + 1][];
+        for (int d = min; d <= max; d++) {
+            byDepth[d] = new int[counts[d]];
+            counts[d] = 0;
+        }
+        for (int rank = 0; rank < dist.length; rank++) {
+            int d = dist[rank] & 0xFF;
+            if (d >= min && d <= max) {
+                byDepth[d][counts[d]++] = rank;
+            }
+        }
+        return (rand, index, cells) -> {
+            int[] ranks = byDepth[min + index / perDepth];
+            long tiles = State.unrank(ranks[rand.nextInt(ranks.length)]);
+            for (int cell = 0; cell < cells.length; cell++) {
+                cells[cell] = State.tileAt(tiles, cell);
+            }
+        };
     }
 
     /**
-     * Converts a list of integers to a string in the required format
-     * @param numbers The list of integers to convert
-     * @return A string representing the state
+     * Writes count instances to a file, generating them in parallel.
+     * @param board the board geometry
+     * @param count the number of instances
+     * @param sampler draws each instance
+     * @param seed the seed of the root generator
+     * @param filename the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
      */
-    private static String convertNumbersToString(List<Integer> numbers) {
-        StringBuilder sb = new StringBuilder("setState \"");
-        for (int i = 0; i < PUZZLE_SIZE * PUZZLE_SIZE; i++) {
-            int number = numbers.get(i);
-            if (number == 0) {
-                sb.append("b");
+    static void generate(Board board, int count, Sampler sampler, long seed, String filename) throws IOException {
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        int window = 2 * Runtime.getRuntime().availableProcessors(); // chunks held in memory at once
+        // every board holds the same tiles, so every line has the length of the goal's
+        ByteBuffer probe = ByteBuffer.allocate(PREFIX.length + 4 * board.cells + 2);
+        encode(board, State.goal(board).toCells(), probe);
+        int lineBytes = probe.position();
+        SplittableRandom root = new SplittableRandom(seed);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int first = 0; first < chunks; first += window) {
+                int n = Math.min(window, chunks - first);
+                SplittableRandom[] rands = new SplittableRandom[n];
+                for (int i = 0; i < n; i++) {
+                    rands[i] = root.split();
+                }
+                ByteBuffer[] buffers = new ByteBuffer[n];
+                int base = first;
+                IntStream.range(0, n).parallel().forEach(i -> {
+                    int from = (base + i) * CHUNK;
+                    int to = Math.min(count, from + CHUNK);
+                    ByteBuffer buffer = ByteBuffer.allocate((to - from) * lineBytes);
+                    int[] cells = new int[board.cells];
+                    for (int index = from; index < to; index++) {
+                        sampler.sample(rands[i], index, cells);
+                        encode(board, cells, buffer);
+                    }
+                    buffer.flip();
+                    buffers[i] = buffer;
+                });
+                while (buffers[n - 1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends one setState command and a newline. 8-puzzle and smaller boards are written one character
+     * per tile with rows separated by spaces, as in "b12 345 678"; larger boards as space-separated numbers.
+     */
+    private static void encode(Board board, int[] cells, ByteBuffer buffer) {
+        buffer.put(PREFIX);
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cell > 0 && (board.cells > 10 || cell % board.width == 0)) {
+                buffer.put((byte) ' ');
+            }
+            int tile = cells[cell];
+            if (tile == 0) {
+                buffer.put((byte) 'b');
             } else {
-                sb.append(number);
+                if (tile >= 10) {
+                    buffer.put((byte) ('0' + tile / 10));
+                }
+                buffer.put((byte) ('0' + tile % 10));
             }
-            if(i % 3 ==2)
-            sb.append(" ");
         }
-        sb.deleteCharAt(sb.length() - 1);
-        sb.append("\"");
-        return sb.toString();
+        buffer.put((byte) '"').put((byte) '\n');
+    }
+
+    /**
+     * Converts the tiles of a board to a setState command
+     * @param board the board geometry
+     * @param cells the tile in each cell, 0 for the blank
+     * @return A string representing the state
+     */
+    private static String convertNumbersToString(Board board, int[] cells) {
+        ByteBuffer buffer = ByteBuffer.allocate(PREFIX.length + 4 * cells.length + 2);
+        encode(board, cells, buffer);
+        return new String(buffer.array(), 0, buffer.position() - 1, StandardCharsets.US_ASCII);
     }
 
 
@@ -62,12 +237,9 @@ public class RandomGenerator {
      * @param state The state to save
      */
     private static void saveStateToFile(String state) {
-        try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_NAME));
-            writer.write(state);
-            writer.write(state);
-            writer.newLine();
-            writer.close();
+        try (FileChannel channel = FileChannel.open(Paths.get(FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap((state + "\n").getBytes(StandardCharsets.US_ASCII)));
         } catch (IOException e) {
             e.printStackTrace();
         }
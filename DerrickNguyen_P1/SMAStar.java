@@ -0,0 +1,318 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Simplified memory-bounded A* (SMA*+) over packed boards. The search keeps an explicit tree whose size is
+ * bounded by a byte budget instead of a node count. Nodes are expanded fully, lowest f first and deepest
+ * first among ties. When the tree outgrows the budget, the worst leaf (highest f, shallowest among ties)
+ * is dropped and its f is backed up into its parent, which remembers the forgotten f of each dropped
+ * child. The parent goes back on the open list with the smallest of them, and expanding it again
+ * regenerates only the dropped children, each starting from its own forgotten f. Children inherit at
+ * least their parent's f (pathmax), so every open f stays a lower bound on the solutions below it and
+ * the first goal popped is optimal whenever its path fits in the budget.
+ *
+ * A tree of n nodes can only hold a path of n - 1 moves, so a node whose f reaches that many moves, or
+ * whose children would not fit next to their ancestors, is hopeless. Hopeless nodes are removed for good:
+ * the parent marks the child's slot dead so it is never regenerated, and a parent whose children are all
+ * dead is hopeless in turn. Once the root is hopeless no solution fits in the budget and the search
+ * returns null. Otherwise a small budget only costs regeneration time, bounded by maxNode expansions. The
+ * tree can go over the budget by the children of one expansion when nothing else is left to drop.
+ */
+public class SMAStar {
+    /**
+     * Estimated heap cost of one tree node: the Node object (12-byte header, three longs, seven ints, three
+     * references and a boolean, 80 bytes with padding) plus its TreeSet entry while it is open (40 bytes).
+     */
+    static final long NODE_BYTES = 120;
+
+    private static final int INFINITE = Integer.MAX_VALUE;
+    private static final int ALL_CHILDREN = 0xF; // missing bits of a node that has never been expanded
+    private static final int FORGOTTEN_BITS = 16; // bits per slot of a forgotten f, which saturates
+    private static final int FORGOTTEN_MAX = (1 << FORGOTTEN_BITS) - 1;
+
+    private final int maxNode;
+    private final long budget;
+    private final Heuristic heuristic;
+    private SearchMetrics metrics;
+    private TreeSet<Node> open;
+    private long held; // nodes in the tree
+
+    /**
+     * Creates a solver.
+     * @param maxNode the maximum number of nodes to expand, regenerations included
+     * @param budget the number of bytes the search tree may use
+     * @param heuristic an admissible heuristic for packed boards
+     */
+    public SMAStar(int maxNode, long budget, Heuristic heuristic) {
+        if (budget < 2 * NODE_BYTES) {
+            throw new IllegalArgumentException("SMA* needs a budget of at least " + 2 * NODE_BYTES + " bytes, got "
+                    + budget);
+        }
+        this.maxNode = maxNode;
+        this.budget = budget;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Returns the counters of the last call to solve(). Peak closed is the largest number of tree nodes
+     * held at once, and peak open the largest number of leaves.
+     * @return the metrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Searches for an optimal solution. The board must be packed.
+     * @param start the initial State object
+     * @return the blank cell after each move, starting with the initial blank, or null if the budget cannot
+     * hold a path to the goal
+     * @throws RuntimeException if more than maxNode nodes are expanded
+     */
+    public int[] solve(State start) {
+        Board board = start.getBoard();
+        metrics = new SearchMetrics("SMA*").start();
+        long tiles = start.getTiles();
+        long sequence = 0;
+        Node root = new Node(null, -1, tiles, start.getBlank(), 0, heuristic.estimate(tiles), 0, sequence++);
+        metrics.evaluations++;
+        open = new TreeSet<>(ORDER);
+        root.missing = ALL_CHILDREN;
+        open.add(root);
+        root.inOpen = true;
+        long limit = budget / NODE_BYTES; // nodes the tree may hold, so a solution has fewer than limit moves
+        held = 1;
+
+        while (!open.isEmpty()) {
+            Node best = open.pollFirst();
+            best.inOpen = false;
+            if (best.f >= limit) {
+                break; // only the root can get here, when even its estimate is too long for the budget
+            }
+            if (best.tiles == board.goalTiles) {
+                metrics.finish(best.g);
+                return path(best);
+            }
+            if (best.g + 1 >= limit) {
+                // a child would not fit next to its ancestors, so this branch is hopeless
+                if (prune(best)) {
+                    break;
+                }
+                continue;
+            }
+            if (metrics.expanded >= maxNode) {
+                metrics.finish(-1);
+                throw new RuntimeException("MaxNode exceeded");
+            }
+            metrics.expanded++;
+            int parentBlank = best.parent != null ? best.parent.blank : -1;
+            int[] targets = board.successorCells[best.blank];
+            for (int slot = 0; slot < targets.length; slot++) {
+                if ((best.missing & ~best.dead & 1 << slot) == 0) {
+                    continue;
+                }
+                int target = targets[slot];
+                metrics.generated++;
+                if (target == parentBlank) {
+                    metrics.duplicates++;
+                    continue;
+                }
+                long next = State.slide(best.tiles, best.blank, target);
+                int h = heuristic.update(best.h, next, State.tileAt(best.tiles, target), target, best.blank);
+                metrics.evaluations++;
+                int inherited = Math.max(best.f, forgotten(best, slot));
+                Node child = new Node(best, slot, next, target, best.g + 1, h, inherited, sequence++);
+                if (child.f >= limit) {
+                    best.dead |= 1 << slot; // too long a solution below it, so never generate it again
+                    continue;
+                }
+                child.missing = ALL_CHILDREN;
+                child.nextSibling = best.firstChild;
+                best.firstChild = child;
+                open.add(child);
+                child.inOpen = true;
+                held++;
+            }
+            best.missing = 0;
+            best.forgotten = 0;
+            if (best.firstChild == null) {
+                if (prune(best)) {
+                    break;
+                }
+                continue;
+            }
+            backUp(best);
+            metrics.closed(held);
+            metrics.open(open.size());
+            while (held > limit) {
+                Node worst = worstLeaf(open, best);
+                if (worst == null) {
+                    break; // only the new children are left to drop, so go over by one expansion instead
+                }
+                open.remove(worst);
+                held--;
+                Node parent = worst.parent;
+                unlink(worst);
+                parent.missing |= 1 << worst.slot;
+                int shift = FORGOTTEN_BITS * worst.slot;
+                parent.forgotten = parent.forgotten & ~((long) FORGOTTEN_MAX << shift)
+                        | (long) Math.min(worst.f, FORGOTTEN_MAX) << shift;
+                // the parent goes back on the open list, as the way back into its dropped children
+                if (parent.inOpen) {
+                    open.remove(parent);
+                }
+                int f = INFINITE;
+                for (int slot = 0; slot < 4; slot++) {
+                    if ((parent.missing & ~parent.dead & 1 << slot) != 0) {
+                        f = Math.min(f, forgotten(parent, slot));
+                    }
+                }
+                parent.f = f;
+                open.add(parent);
+                parent.inOpen = true;
+            }
+        }
+        metrics.finish(-1);
+        return null;
+    }
+
+    /**
+     * Removes a hopeless node from the tree and marks its slot dead in its parent, then removes the parent
+     * too if that left it with no children and none to regenerate.
+     * @param node a node with no children in the tree
+     * @return true if the root was removed, so no solution fits in the budget
+     */
+    private boolean prune(Node node) {
+        while (true) {
+            if (node.inOpen) {
+                open.remove(node);
+                node.inOpen = false;
+            }
+            held--;
+            Node parent = node.parent;
+            if (parent == null) {
+                return true;
+            }
+            unlink(node);
+            parent.dead |= 1 << node.slot;
+            if (parent.firstChild != null || parent.missing != 0) {
+                backUp(parent);
+                return false;
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Raises the f of a fully expanded node to the smallest f of its children, and so on up the tree
+     * while the f keeps rising. A node with dropped children keeps the smallest forgotten f instead, since
+     * that is its key on the open list for regenerating them.
+     * @param node a node with children in the tree
+     */
+    private static void backUp(Node node) {
+        for (; node != null && node.missing == 0; node = node.parent) {
+            int f = INFINITE;
+            for (Node child = node.firstChild; child != null; child = child.nextSibling) {
+                f = Math.min(f, child.f);
+            }
+            if (f <= node.f) {
+                break;
+            }
+            node.f = f;
+        }
+    }
+
+    /**
+     * Returns the f a dropped child had when it was dropped, a lower bound on the solutions below it, or 0
+     * if the child of that slot was never dropped.
+     */
+    private static int forgotten(Node node, int slot) {
+        return (int) (node.forgotten >>> FORGOTTEN_BITS * slot) & FORGOTTEN_MAX;
+    }
+
+    /**
+     * Takes a node out of its parent's list of children.
+     */
+    private static void unlink(Node node) {
+        Node parent = node.parent;
+        if (parent.firstChild == node) {
+            parent.firstChild = node.nextSibling;
+            return;
+        }
+        Node prev = parent.firstChild;
+        while (prev.nextSibling != node) {
+            prev = prev.nextSibling;
+        }
+        prev.nextSibling = node.nextSibling;
+    }
+
+    /**
+     * Finds the worst open node that has no children in the tree: highest f, then shallowest, then newest.
+     * Open nodes with children are waiting to regenerate dropped ones and cannot be dropped themselves, and
+     * the children of the node just expanded are kept so that every expansion makes progress.
+     * @param open the open list
+     * @param expanded the node just expanded
+     * @return the leaf to drop, or null if there is none
+     */
+    private static Node worstLeaf(TreeSet<Node> open, Node expanded) {
+        Iterator<Node> it = open.descendingIterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            if (node.firstChild == null && node.parent != null && node.parent != expanded) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private int[] path(Node goal) {
+        int[] res = new int[goal.g + 1];
+        for (Node node = goal; node != null; node = node.parent) {
+            res[node.g] = node.blank;
+        }
+        return res;
+    }
+
+    /**
+     * Lowest f first, then deepest, then oldest, so the last element is the worst leaf to drop: highest f,
+     * then shallowest, then newest.
+     */
+    private static final Comparator<Node> ORDER = (a, b) -> {
+        if (a.f != b.f) {
+            return Integer.compare(a.f, b.f);
+        }
+        if (a.g != b.g) {
+            return Integer.compare(b.g, a.g);
+        }
+        return Long.compare(a.sequence, b.sequence);
+    };
+
+    private static final class Node {
+        final Node parent;
+        final int slot; // index of this node's blank in the parent's successorCells, -1 for the root
+        final long tiles;
+        final int blank;
+        final int g;
+        final int h;
+        final long sequence; // creation order, to break ties
+        int f; // backed-up estimate, at least g + h
+        long forgotten; // f of each dropped child since the last expansion, FORGOTTEN_BITS per slot
+        int missing; // bit per successorCells slot whose child is not in the tree
+        int dead; // bit per successorCells slot whose child is hopeless and never regenerated
+        Node firstChild; // children currently in the tree, linked through nextSibling
+        Node nextSibling;
+        boolean inOpen; // on the open list, either as a leaf or to regenerate missing children
+
+        Node(Node parent, int slot, long tiles, int blank, int g, int h, int f, long sequence) {
+            this.parent = parent;
+            this.slot = slot;
+            this.tiles = tiles;
+            this.blank = blank;
+            this.g = g;
+            this.h = h;
+            this.sequence = sequence;
+            this.f = Math.max(f, g + h);
+        }
+    }
+}
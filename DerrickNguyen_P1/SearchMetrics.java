@@ -0,0 +1,159 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Counters for one solver run. The solvers bump the fields directly in their loops; start() and
+ * finish() bracket the run, take the wall time, and commit a SearchMetrics.Recorded JFR event when a
+ * recording has it enabled, so production searches can be profiled with
+ *     java -XX:StartFlightRecording:filename=search.jfr ...
+ * without attaching a profiler. The event is only created once the flight recorder is running, since
+ * the first event of a JVM loads JFR itself, which took close to 300 ms per run.
+ */
+public class SearchMetrics {
+    final String solver; // name of the solver, as in the solve command
+    long expanded; // boards whose successors were generated
+    long generated; // successors produced, including the ones pruned as duplicates
+    long duplicates; // successors dropped because they were already reached at no greater cost
+    long evaluations; // heuristic evaluations, full or incremental
+    long peakOpen; // largest open list (frontier, beam or IDA* path) seen
+    long peakClosed; // largest reached set seen
+    long nanos; // wall time of the run
+    int depth = -1; // solution length, -1 if none was found
+
+    private long startNanos;
+    private Recorded event; // null while no flight recorder runs
+
+    /**
+     * Creates empty counters.
+     * @param solver the name of the solver
+     */
+    public SearchMetrics(String solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Starts the clock.
+     * @return this
+     */
+    SearchMetrics start() {
+        if (FlightRecorder.isInitialized()) {
+            event = new Recorded();
+            event.begin();
+        }
+        startNanos = System.nanoTime();
+        return this;
+    }
+
+    /**
+     * Stops the clock and commits the JFR event if it is enabled.
+     * @param depth the solution length, or -1 if none was found
+     */
+    void finish(int depth) {
+        nanos = System.nanoTime() - startNanos;
+        this.depth = depth;
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.solver = solver;
+            event.expanded = expanded;
+            event.generated = generated;
+            event.duplicates = duplicates;
+            event.evaluations = evaluations;
+            event.peakOpen = peakOpen;
+            event.peakClosed = peakClosed;
+            event.depth = depth;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records the current open-list size if it is a new peak.
+     * @param size the open-list size
+     */
+    void open(long size) {
+        if (size > peakOpen) {
+            peakOpen = size;
+        }
+    }
+
+    /**
+     * Records the current reached-set size if it is a new peak.
+     * @param size the reached-set size
+     */
+    void closed(long size) {
+        if (size > peakClosed) {
+            peakClosed = size;
+        }
+    }
+
+    /**
+     * Returns the effective branching factor b*, the branching factor a uniform tree of the solution's
+     * depth would need to hold every generated node: generated + 1 = 1 + b* + b*^2 + ... + b*^depth.
+     * @return b*, or NaN if no solution was found or the solution is empty
+     */
+    public double branchingFactor() {
+        if (depth <= 0) {
+            return Double.NaN;
+        }
+        double lo = 1;
+        double hi = Math.max(2, generated);
+        for (int i = 0; i < 64; i++) {
+            double mid = (lo + hi) / 2;
+            double total = 0;
+            double power = 1;
+            for (int d = 1; d <= depth && total <= generated; d++) {
+                power *= mid;
+                total += power;
+            }
+            if (total > generated) {
+                hi = mid;
+            } else {
+                lo = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Formats the counters on one line.
+     * @return the metrics summary
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: expanded %d, generated %d, duplicates %d, evaluations %d, peak open %d, "
+                        + "peak closed %d, b* %.3f, %d ns",
+                solver, expanded, generated, duplicates, evaluations, peakOpen, peakClosed, branchingFactor(), nanos);
+    }
+
+    /**
+     * JFR event committed at the end of each run.
+     */
+    @Name("EightPuzzle.Search")
+    @Label("Puzzle Search")
+    @Category("EightPuzzle")
+    @Description("One solver run and its search counters")
+    static class Recorded extends Event {
+        @Label("Solver")
+        String solver;
+        @Label("Expanded")
+        long expanded;
+        @Label("Generated")
+        long generated;
+        @Label("Duplicates")
+        long duplicates;
+        @Label("Heuristic Evaluations")
+        long evaluations;
+        @Label("Peak Open")
+        long peakOpen;
+        @Label("Peak Closed")
+        long peakClosed;
+        @Label("Solution Depth")
+        int depth;
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a successful solve: the moves of the solution, rebuilt once after the goal was found, the
+ * search counters of the run, and the state the moves end in.
+ */
+public class SearchResult {
+    final List<String> moves; // "up", "down", "left" or "right" for each move of the solution
+    final SearchMetrics metrics; // counters of the run; expanded is reported as "Number of states visited"
+    final State end; // the state after all moves, the goal unless the solver stopped early
+    double bound = Double.NaN; // proven upper bound on the solution length over the optimal length, set by anytime solvers
+    boolean cached; // true if the moves came from the SolutionCache rather than a search
+
+    /**
+     * Creates a result.
+     * @param moves the moves of the solution in order
+     * @param metrics the counters of the run
+     * @param end the state after all moves
+     */
+    public SearchResult(List<String> moves, SearchMetrics metrics, State end) {
+        this.moves = moves;
+        this.metrics = metrics;
+        this.end = end;
+    }
+
+    /**
+     * Builds a result from the blank cell after each move, as returned by the search classes.
+     * @param start the initial State object
+     * @param blanks the blank cell after each move, starting with the initial blank
+     * @param metrics the counters of the run
+     * @return the result
+     */
+    public static SearchResult fromBlanks(State start, int[] blanks, SearchMetrics metrics) {
+        Board board = start.getBoard();
+        List<String> moves = new ArrayList<>(blanks.length);
+        State end = start;
+        for (int i = 1; i < blanks.length; i++) {
+            moves.add(board.direction(blanks[i - 1], blanks[i]));
+            end = end.successor(blanks[i]);
+        }
+        return new SearchResult(moves, metrics, end);
+    }
+
+    /**
+     * Builds a result from a list of moves, such as a cached solution.
+     * @param start the initial State object
+     * @param moves the moves of the solution in order
+     * @param metrics the counters of the run
+     * @return the result
+     */
+    public static SearchResult fromMoves(State start, List<String> moves, SearchMetrics metrics) {
+        State end = start;
+        for (String move : moves) {
+            end = end.move(move);
+        }
+        return new SearchResult(moves, metrics, end);
+    }
+
+    /**
+     * Formats the result the way the solve commands print it.
+     * @return the directions, move count, node count or cache line, and goal line, each ending in a newline
+     */
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder("Directions: ");
+        for (String move : moves) {
+            res.append(move).append(' ');
+        }
+        res.append("\nNumber of tiles moved ").append(moves.size());
+        if (cached) {
+            res.append("\nAnswered from cache");
+        } else {
+            res.append("\nNumber of states visited ").append(metrics.expanded);
+        }
+        res.append("\nFound goal state\n");
+        return res.toString();
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of solutions keyed by solver mode and packed board, evicting the least recently used
+ * entry when full. For modes that return optimal solutions, storing a path also stores the suffix from
+ * every board along it, since each of those suffixes is itself an optimal solution. Shared by all
+ * EightPuzzle contexts, so access is synchronized.
+ */
+public class SolutionCache {
+    static final int DEFAULT_CAPACITY = 1 << 16; // entries in the shared cache
+
+    private static SolutionCache shared;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, List<String>> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache.
+     * @param capacity the maximum number of entries, counting each stored suffix
+     */
+    public SolutionCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<String>> eldest) {
+                if (size() > SolutionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all puzzles, created with DEFAULT_CAPACITY on first use.
+     * @return the shared cache
+     */
+    public static synchronized SolutionCache shared() {
+        if (shared == null) {
+            shared = new SolutionCache(DEFAULT_CAPACITY);
+        }
+        return shared;
+    }
+
+    /**
+     * Looks up a stored solution and counts the hit or miss.
+     * @param mode the solver and its parameters, as in "A* h2"
+     * @param tiles the packed start board
+     * @return the moves from the board to the goal, or null if none is stored
+     */
+    public synchronized List<String> get(String mode, long tiles) {
+        List<String> res = entries.get(new Key(mode, tiles));
+        if (res != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return res;
+    }
+
+    /**
+     * Stores a solution.
+     * @param mode the solver and its parameters, as in "A* h2"
+     * @param board the board geometry
+     * @param tiles the packed start board
+     * @param moves the moves from the board to the goal
+     * @param optimal true if the solver's solutions are optimal, in which case every suffix is stored too
+     */
+    public synchronized void put(String mode, Board board, long tiles, List<String> moves, boolean optimal) {
+        List<String> path = List.copyOf(moves);
+        entries.put(new Key(mode, tiles), path);
+        if (!optimal) {
+            return;
+        }
+        int blank = State.blankOf(tiles);
+        for (int i = 0; i < path.size() - 1; i++) {
+            int target = target(board, blank, path.get(i));
+            tiles = State.slide(tiles, blank, target);
+            blank = target;
+            entries.putIfAbsent(new Key(mode, tiles), path.subList(i + 1, path.size()));
+        }
+    }
+
+    private static int target(Board board, int blank, String direction) {
+        switch (direction) {
+            case "up":
+                return blank - board.width;
+            case "down":
+                return blank + board.width;
+            case "left":
+                return blank - 1;
+            default:
+                return blank + 1;
+        }
+    }
+
+    /**
+     * Removes every entry and resets the counters.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Formats the size and the hit, miss and eviction counters.
+     * @return the cache statistics
+     */
+    @Override
+    public synchronized String toString() {
+        return "Cache size " + entries.size() + " of " + capacity + ", hits " + hits + ", misses " + misses
+                + ", evictions " + evictions;
+    }
+
+    private static final class Key {
+        final String mode;
+        final long tiles;
+
+        Key(String mode, long tiles) {
+            this.mode = mode;
+            this.tiles = tiles;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return tiles == other.tiles && mode.equals(other.mode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mode, tiles);
+        }
+    }
+}
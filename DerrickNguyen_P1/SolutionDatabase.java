@@ -0,0 +1,185 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exact distance-to-goal table for every 8-puzzle board, stored as one byte per permutation rank.
+ * The table is built once by a breadth-first search backwards from the goal and written to a file;
+ * afterwards it is memory-mapped, so an optimal path is read off by always stepping to a neighbor
+ * one move closer to the goal. The file starts with MAGIC and VERSION as big-endian ints, so a stale or
+ * foreign file of the right size is rejected instead of being read as distances.
+ */
+public class SolutionDatabase {
+    static final String FILE_NAME = "solution_db.bin"; // default location of the table
+    static final int UNREACHABLE = 0xFF; // distance stored for boards with the wrong parity
+    static final int MAGIC = 0x38534442; // "8SDB"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8; // MAGIC and VERSION
+
+    private static SolutionDatabase shared; // FILE_NAME, mapped once for all callers
+
+    private final ByteBuffer distances;
+
+    private SolutionDatabase(ByteBuffer distances) {
+        this.distances = distances;
+    }
+
+    /**
+     * Computes the distance table with a breadth-first search from the goal. Moves are reversible, so
+     * the BFS depth of a board is its optimal solution length.
+     * @return one byte per permutation rank, UNREACHABLE for unsolvable boards
+     */
+    static byte[] build() {
+        byte[] dist = new byte[State.PERMUTATIONS];
+        Arrays.fill(dist, (byte) UNREACHABLE);
+        long[] queue = new long[State.PERMUTATIONS / 2]; // only one parity class is reachable
+        int head = 0;
+        int tail = 0;
+        dist[State.rank(State.GOAL_TILES)] = 0;
+        queue[tail++] = State.GOAL_TILES;
+        while (head < tail) {
+            long tiles = queue[head++];
+            int blank = State.blankOf(tiles);
+            int d = dist[State.rank(tiles)] & 0xFF;
+            for (int target : State.EIGHT.successorCells[blank]) {
+                long next = State.slide(tiles, blank, target);
+                int r = State.rank(next);
+                if ((dist[r] & 0xFF) == UNREACHABLE) {
+                    dist[r] = (byte) (d + 1);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Builds the distance table and writes it to the given file.
+     * @param filename the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String filename) throws IOException {
+        byte[] dist = build();
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw");
+             FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer[] buffers = {ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip(),
+                    ByteBuffer.wrap(dist)};
+            while (buffers[1].hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+    }
+
+    /**
+     * Maps an existing table file read-only. Nothing is parsed; pages are faulted in on first lookup.
+     * @param filename the table file written by write()
+     * @return the loaded database
+     * @throws IOException if the file is missing, is not a table of this version or has the wrong size
+     */
+    public static SolutionDatabase load(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // read until the header is full or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(filename + " is not a version " + VERSION
+                        + " solution database, delete it to rebuild it");
+            }
+            if (channel.size() != HEADER_BYTES + State.PERMUTATIONS) {
+                throw new IOException("Solution database " + filename + " has " + channel.size()
+                        + " bytes, expected " + (HEADER_BYTES + State.PERMUTATIONS));
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, State.PERMUTATIONS);
+            return new SolutionDatabase(map);
+        }
+    }
+
+    /**
+     * Loads the table from the given file, building and writing it first if the file does not exist.
+     * @param filename the table file
+     * @return the loaded database
+     * @throws IOException if the file cannot be written or read
+     */
+    public static SolutionDatabase loadOrBuild(String filename) throws IOException {
+        if (!new File(filename).exists()) {
+            write(filename);
+        }
+        return load(filename);
+    }
+
+    /**
+     * Returns the database in FILE_NAME, building the file if needed and mapping it on the first call
+     * only. Lookups never modify the mapping, so the result can be shared across threads.
+     * @return the shared database
+     * @throws IOException if the file cannot be written or read
+     */
+    public static synchronized SolutionDatabase shared() throws IOException {
+        if (shared == null) {
+            shared = loadOrBuild(FILE_NAME);
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the optimal number of moves from the given board to the goal.
+     * @param tiles the packed board
+     * @return the optimal solution length, or UNREACHABLE if the board cannot be solved
+     */
+    public int distance(long tiles) {
+        return distances.get(State.rank(tiles)) & 0xFF;
+    }
+
+    /**
+     * Reads an optimal path off the table by greedy descent: each step moves to a neighbor whose
+     * distance is one less than the current board's.
+     * @param state the board to solve
+     * @return the moves of the blank, or null if the board cannot be solved
+     * @throws IllegalStateException if no neighbor is one move closer, which only a corrupt table allows
+     */
+    public List<String> solve(State state) {
+        long tiles = state.getTiles();
+        int blank = state.getBlank();
+        int d = distance(tiles);
+        if (d == UNREACHABLE) {
+            return null;
+        }
+        List<String> moves = new ArrayList<>(d);
+        while (d > 0) {
+            int closer = -1;
+            for (int target : State.EIGHT.successorCells[blank]) {
+                if (distance(State.slide(tiles, blank, target)) == d - 1) {
+                    closer = target;
+                    break;
+                }
+            }
+            if (closer < 0) {
+                throw new IllegalStateException("Solution database is corrupt: a board at distance " + d
+                        + " has no neighbor at distance " + (d - 1));
+            }
+            moves.add(State.EIGHT.direction(blank, closer));
+            tiles = State.slide(tiles, blank, closer);
+            blank = closer;
+            d--;
+        }
+        return moves;
+    }
+
+    /**
+     * Builds the table offline.
+     * @param args optional output file name, defaults to FILE_NAME
+     */
+    public static void main(String[] args) throws IOException {
+        String filename = args.length > 0 ? args[0] : FILE_NAME;
+        write(filename);
+        System.out.println("Wrote solution database to " + filename);
+    }
+}
@@ -1,40 +1,221 @@
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class State implements Comparable<State> {
-    private int[][] board;
-    private String string_state;
+    static final Board EIGHT = Board.of(3); // geometry of the 8-puzzle
+    static final int CELLS = 9; // number of cells on the 8-puzzle board
+    static final String GOAL = "b12345678"; // string form of the 8-puzzle goal state
+    static final long GOAL_TILES = EIGHT.goalTiles; // packed form of the 8-puzzle goal state
+    static final int PERMUTATIONS = 362880; // 9!, the size of an array indexed by rank()
+
+    private static final int[] FACTORIAL = {1, 1, 2, 6, 24, 120, 720, 5040, 40320};
+
+    private final Board board; // size and lookup tables of this state's board
+    private long tiles; // one 4-bit tile per cell, cell i stored in bits 4i..4i+3, blank stored as 0
+    private int[] wide; // tile in each cell for boards too large to pack, null otherwise
+    private int blank; // cell index of the blank tile
     private State parent;
-    private int current_blank_row ;
-    private int current_blank_col ;
     private int g;
     private int h;
     /**
      * Constructs a new State object with the given string representation of the board. The string
-     * must contain the characters 'b' for the blank tile and the numbers 1-8 representing the other tiles.
-     * The string should have no spaces.
+     * must contain the character 'b' for the blank tile and the numbers 1 to N*N-1 for the other tiles,
+     * either one character per tile ("b12 345 678") or as whitespace-separated numbers. Quotes are ignored,
+     * and the board width follows from the number of tiles.
      * @param str_state the string representation of the board
      */
     public State(String str_state) {
-        this.string_state = str_state;
-        this.board = new int[3][3];
-        str_state = str_state.replaceAll("\\s", "");
-        int strindex = 0;
-            for (int i = 0; i < 3; i++) {
-                for (int j = 0; j < 3; j++) {
-                    if (strindex < str_state.length()) {
-                        char c = str_state.charAt(strindex);
-                        if (c == 'b') {
-                            board[i][j] = 0;
-                            this.current_blank_row = i;
-                            this.current_blank_col = j;
-                        } else {
-                            board[i][j] = Character.getNumericValue(c);
-                        }
-                        strindex++;
-                    }
-                }
+        this(Board.parse(str_state));
+    }
+    /**
+     * Constructs a new State object from the tile in each cell.
+     * @param cells the tiles in row-major order, 0 for the blank
+     */
+    public State(int[] cells) {
+        this.board = Board.forCells(cells);
+        if (board.packed) {
+            this.tiles = board.pack(cells);
+        } else {
+            this.wide = cells.clone();
+        }
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == 0) {
+                this.blank = cell;
+            }
+        }
+    }
+    /**
+     * Returns the goal state of the given board size.
+     * @param board the board geometry
+     * @return a new State object with the blank in cell 0 and tile v in cell v
+     */
+    static State goal(Board board) {
+        int[] cells = new int[board.cells];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = cell;
+        }
+        return new State(cells);
+    }
+    /**
+     * Constructs a new 8-puzzle State object directly from a packed board.
+     * @param tiles the packed board
+     * @param blank the cell index of the blank tile
+     */
+    State(long tiles, int blank) {
+        this(EIGHT, tiles, blank);
+    }
+    /**
+     * Constructs a new State object directly from a packed board.
+     * @param board the board geometry, which must be packed
+     * @param tiles the packed board
+     * @param blank the cell index of the blank tile
+     */
+    State(Board board, long tiles, int blank) {
+        this.board = board;
+        this.tiles = tiles;
+        this.blank = blank;
+    }
+    private State(Board board, int[] wide, int blank) {
+        this.board = board;
+        this.wide = wide;
+        this.blank = blank;
+    }
+    /**
+     * Returns the tile stored in the given cell of a packed board.
+     * @param tiles the packed board
+     * @param cell the cell index in row-major order
+     * @return the tile number, 0 for the blank
+     */
+    static int tileAt(long tiles, int cell) {
+        return (int) (tiles >>> (4 * cell)) & 0xF;
+    }
+    /**
+     * Finds the cell holding the blank in a packed board of any size.
+     * @param tiles the packed board
+     * @return the cell index of the blank
+     */
+    static int blankOf(long tiles) {
+        for (int cell = 0; cell < Board.MAX_PACKED_CELLS; cell++) {
+            if (tileAt(tiles, cell) == 0) {
+                return cell;
             }
+        }
+        return -1;
+    }
+    /**
+     * Slides the tile in the target cell into the blank cell of a packed board. The target must be
+     * adjacent to the blank.
+     * @param tiles the packed board
+     * @param blank the cell index of the blank
+     * @param target the cell index of the tile to slide
+     * @return the packed board after the move, with the blank now in the target cell
+     */
+    static long slide(long tiles, int blank, int target) {
+        long tile = (tiles >>> (4 * target)) & 0xF;
+        return (tiles & ~(0xFL << (4 * target))) | (tile << (4 * blank));
+    }
+    /**
+     * Ranks a packed 8-puzzle board by its Lehmer code, giving a perfect hash of the nine-tile permutation
+     * into 0 .. 9!-1. The goal state has rank 0, and unrank() inverts the mapping.
+     * @param tiles the packed board
+     * @return the permutation rank of the board
+     */
+    static int rank(long tiles) {
+        int res = 0;
+        int used = 0; // bit t is set once tile t has been seen in an earlier cell
+        for (int cell = 0; cell < CELLS - 1; cell++) {
+            int tile = tileAt(tiles, cell);
+            int smallerUnused = tile - Integer.bitCount(used & ((1 << tile) - 1));
+            res += smallerUnused * FACTORIAL[CELLS - 1 - cell];
+            used |= 1 << tile;
+        }
+        return res;
+    }
+    /**
+     * Rebuilds the packed 8-puzzle board with the given Lehmer rank.
+     * @param rank a value in 0 .. 9!-1
+     * @return the packed board
+     */
+    static long unrank(int rank) {
+        long res = 0;
+        int unused = (1 << CELLS) - 1; // bit t is set while tile t is still available
+        for (int cell = 0; cell < CELLS; cell++) {
+            int f = FACTORIAL[CELLS - 1 - cell];
+            int k = rank / f;
+            rank %= f;
+            // pick the k-th lowest tile that is still unused
+            int bits = unused;
+            for (int i = 0; i < k; i++) {
+                bits &= bits - 1;
+            }
+            int tile = Integer.numberOfTrailingZeros(bits);
+            unused &= ~(1 << tile);
+            res |= (long) tile << (4 * cell);
+        }
+        return res;
+    }
+    /**
+     * Returns the permutation rank of this state's board, which must be an 8-puzzle board.
+     * @return a value in 0 .. 9!-1, 0 for the goal
+     */
+    public int rank() {
+        return rank(this.tiles);
+    }
+    /**
+     * Returns the successor reached by moving the blank into the given cell.
+     * @param target a cell from the board's successorCells for the current blank
+     * @return the new State object
+     */
+    public State successor(int target) {
+        if (wide != null) {
+            int[] next = wide.clone();
+            next[blank] = next[target];
+            next[target] = 0;
+            return new State(board, next, target);
+        }
+        return new State(board, slide(this.tiles, this.blank, target), target);
+    }
+    /**
+     * Returns the packed board of this state.
+     * @return one 4-bit tile per cell packed into a long
+     * @throws UnsupportedOperationException if the board is too large to pack
+     */
+    public long getTiles() {
+        if (wide != null) {
+            throw new UnsupportedOperationException("A " + board.width + "x" + board.width + " board cannot be packed");
+        }
+        return tiles;
+    }
+    /**
+     * Returns the geometry of this state's board.
+     * @return the Board shared by all states of this size
+     */
+    public Board getBoard() {
+        return board;
+    }
+    /**
+     * Returns the tile in the given cell.
+     * @param cell the cell index in row-major order
+     * @return the tile number, 0 for the blank
+     */
+    public int tile(int cell) {
+        return wide != null ? wide[cell] : tileAt(tiles, cell);
+    }
+    /**
+     * Returns the tile in each cell.
+     * @return a new array of the tiles in row-major order, 0 for the blank
+     */
+    public int[] toCells() {
+        return wide != null ? wide.clone() : board.unpack(tiles);
+    }
+    /**
+     * Returns the cell index of the blank tile.
+     * @return the blank index in row-major order
+     */
+    public int getBlank() {
+        return blank;
     }
     /**
      * Sets the parent state of this State object.
@@ -56,18 +237,7 @@ public class State implements Comparable<State> {
      * @return the h2 heuristic value
      */
     public int getH2(){
-        int res = 0;
-        for(int i = 0; i <3;i++){
-            for(int j = 0; j < 3;j++){
-                int val = board[i][j];
-                if (val != 0){
-                    int r = i - (val /3);
-                    int c = j - (val %3);
-                    res += Math.abs(r) + Math.abs(c);
-                }
-            }
-        }
-        return res;
+        return wide != null ? board.getH2(wide) : board.getH2(tiles);
     }
 
     /**
@@ -75,14 +245,15 @@ public class State implements Comparable<State> {
      * @return the h1 heuristic value
      */
     public int getH1(){
+        if (wide == null) {
+            return board.getH1(tiles);
+        }
         int res = 0;
-        String goal = "b12345678";
-        for (int i = 0; i < 9; i++) {
-            if (this.toStringState().charAt(i) != goal.charAt(i)) {
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (wide[cell] != cell) {
                 res++;
             }
         }
-
         return res;
     }
     /**
@@ -103,6 +274,23 @@ public class State implements Comparable<State> {
             return 0;
         }
     }
+    /**
+     Two states are equal when they hold the same board, regardless of their search bookkeeping.
+     @param o the object to compare with
+     @return true if o is a State with the same packed board
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof State)) {
+            return false;
+        }
+        State other = (State) o;
+        return other.board == this.board && other.tiles == this.tiles && Arrays.equals(other.wide, this.wide);
+    }
+    @Override
+    public int hashCode() {
+        return wide != null ? Arrays.hashCode(wide) : Long.hashCode(tiles);
+    }
     /**
      Sets the cost of getting to this state from the initial state.
      @param g the new cost value
@@ -143,119 +331,68 @@ public class State implements Comparable<State> {
      @return the string representation of this state
      */
     public String toStringState() {
-        StringBuilder res = new StringBuilder();
-        for(int i = 0; i < 3;i++){
-            for(int j = 0; j < 3; j++){
-                if(board[i][j] ==0){
-                    res.append('b');
-                    continue;
-                }
-                res.append(board[i][j]);
-            }
-        }
-        return res.toString();
+        return board.format(toCells());
     }
 
     public boolean isSolvable(State state){
-        int[] arr = new int[9];
-        int k = 0;
-        int inversions = 0;
-
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                arr[k] = state.board[i][j];
-                k++;
-            }
-        }
-        for (int i = 0; i < 8; i++) {
-            for (int j = i + 1; j < 9; j++) {
-                if (arr[j] != 0 && arr[i] != 0 && arr[i] > arr[j]) {
-                    inversions++;
-                }
-            }
-        }
-
-        // Check if the puzzle is solvable
-        if (inversions % 2 == 0) {
-            return true;
-        } else {
-            return false;
-        }
+        return state.board.isSolvable(state.toCells());
     }
 
     public void printState() {
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                System.out.print(board[i][j] + " ");
+        printState(System.out);
+    }
+    /**
+     * Prints the board one row per line to the given stream.
+     * @param out the stream to print to
+     */
+    public void printState(PrintStream out) {
+        int width = board.width;
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < width; j++) {
+                out.print(tile(i * width + j) + " ");
             }
-            System.out.print("\n");
+            out.print("\n");
         }
     }
     public int getCurrent_blank_row(){
-        return this.current_blank_row;
+        return this.blank / board.width;
     }
     public int getCurrent_blank_col(){
-        return this.current_blank_col;
-    }
-    public void setCurrent_blank_row(int row){
-        this.current_blank_row = row;
-    }
-    public void setCurrent_blank_col(int col){
-        this.current_blank_col = col;
+        return this.blank % board.width;
     }
     public boolean isGoal(){
-        if(this.toStringState().equals("b12345678")){
-            return true;
+        if (wide != null) {
+            return board.getH2(wide) == 0;
         }
-        return false;
+        return this.tiles == board.goalTiles;
     }
     public State up(){
-        if(current_blank_row >0){
-            State newState = new State(this.string_state);
-            int temp = newState.board[current_blank_row][current_blank_col];
-            newState.board[current_blank_row][current_blank_col] = newState.board[current_blank_row-1][current_blank_col];
-            newState.board[current_blank_row-1][current_blank_col] = temp;
-            newState.setCurrent_blank_row(this.current_blank_row - 1);
-            return newState;
+        if(getCurrent_blank_row() > 0){
+            return successor(blank - board.width);
         }
         else{
             return null;
         }
     }
     public State down(){
-        if(current_blank_row <2) {
-            State newState = new State(this.string_state);
-            int temp = newState.board[current_blank_row][current_blank_col];
-            newState.board[current_blank_row][current_blank_col] = newState.board[current_blank_row + 1][current_blank_col];
-            newState.board[current_blank_row + 1][current_blank_col] = temp;
-            newState.setCurrent_blank_row(this.current_blank_row + 1);
-            return newState;
+        if(getCurrent_blank_row() < board.width - 1) {
+            return successor(blank + board.width);
         }
         else{
             return null;
         }
     }
     public State left(){
-        if(current_blank_col >0){
-            State newState = new State(this.string_state);
-            int temp = newState.board[current_blank_row][current_blank_col];
-            newState.board[current_blank_row][current_blank_col] = newState.board[current_blank_row][current_blank_col-1];
-            newState.board[current_blank_row][current_blank_col-1] = temp;
-            newState.setCurrent_blank_col(this.current_blank_col - 1);
-            return newState;
+        if(getCurrent_blank_col() > 0){
+            return successor(blank - 1);
         }
         else{
             return null;
         }
     }
     public State right(){
-        if(current_blank_col <2){
-            State newState = new State(this.string_state);
-            int temp = newState.board[current_blank_row][current_blank_col];
-            newState.board[current_blank_row][current_blank_col] = newState.board[current_blank_row][current_blank_col+1];
-            newState.board[current_blank_row][current_blank_col+1] = temp;
-            newState.setCurrent_blank_col(this.current_blank_col + 1);
-            return newState;
+        if(getCurrent_blank_col() < board.width - 1){
+            return successor(blank + 1);
         }
         else{
             return null;
@@ -263,91 +400,54 @@ public class State implements Comparable<State> {
     }
     public List<String> action_Avai(){
         List<String> res = new ArrayList<>();
-        if(this.getCurrent_blank_row() == 0){
-            res.add("down");
-        } else if (this.getCurrent_blank_row() == 1) {
+        int last = board.width - 1;
+        if (this.getCurrent_blank_row() > 0) {
             res.add("up");
+        }
+        if (this.getCurrent_blank_row() < last) {
             res.add("down");
-        } else if (this.getCurrent_blank_row() == 2) {
-            res.add("up");
         }
 
-        if(this.getCurrent_blank_col() == 0){
-            res.add("right");
-        } else if (this.getCurrent_blank_col() == 1) {
+        if (this.getCurrent_blank_col() > 0) {
             res.add("left");
+        }
+        if (this.getCurrent_blank_col() < last) {
             res.add("right");
-        } else if (this.getCurrent_blank_col() == 2) {
-            res.add("left");
         }
         return res;
     }
     public List<State> neighbors() {
-        List<State> neighbors_list = new ArrayList<State>();
-
-        // Get the row and column of the blank tile
-        int blank_row = this.getCurrent_blank_row();
-        int blank_col = this.getCurrent_blank_col();
+        int[] targets = board.successorCells[blank];
+        List<State> neighbors_list = new ArrayList<State>(targets.length);
 
-        // Generate neighbors by moving the blank tile in different directions
-        if (blank_row > 0) {
-            // Move blank tile up
-            State upNeighbor = new State(this.toStringState());
-            upNeighbor = upNeighbor.up();
-            neighbors_list.add(upNeighbor);
-        }
-        if (blank_col > 0) {
-            // Move blank tile left
-            State leftNeighbor = new State(this.toStringState());
-            leftNeighbor = leftNeighbor.left();
-            neighbors_list.add(leftNeighbor);
-        }
-        if (blank_row < 2) {
-            // Move blank tile down
-            State downNeighbor = new State(this.toStringState());
-            downNeighbor = downNeighbor.down();
-            neighbors_list.add(downNeighbor);
-        }
-
-        if (blank_col < 2) {
-            // Move blank tile right
-            State rightNeighbor = new State(this.toStringState());
-            rightNeighbor = rightNeighbor.right();
-            neighbors_list.add(rightNeighbor);
+        // Generate neighbors by moving the blank tile up, left, down and right
+        for (int target : targets) {
+            neighbors_list.add(successor(target));
         }
 
         return neighbors_list;
     }
     public State move(String direction){
-        if(direction == "left"){
-            State leftState = new State(this.toStringState());
-            leftState = leftState.left();
-            return leftState;
-        }
-        if(direction == "right"){
-            State rightState = new State(this.toStringState());
-            rightState = rightState.right();
-            return rightState;
-        }
-        if(direction == "up"){
-            State upState = new State(this.toStringState());
-            upState = upState.up();
-            return upState;
-        }
-        if(direction == "down"){
-            State downState = new State(this.toStringState());
-            downState = downState.down();
-            return downState;
+        switch (direction) {
+            case "left":
+                return left();
+            case "right":
+                return right();
+            case "up":
+                return up();
+            case "down":
+                return down();
+            default:
+                return null;
         }
-        return null;
     }
 
     public static void main(String[] args){
         State state = new State("b12 345 678");
         state.printState();
-        state.move("right");
+        state = state.move("right");
         state.printState();
-        state.right();
+        state = state.right();
         state.printState();
     }
 }
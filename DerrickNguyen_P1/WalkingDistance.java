@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * Walking distance heuristic. Ignoring columns, a board reduces to a table counting, for each row, how
+ * many of its tiles belong in each goal row, plus the row of the blank. Every vertical move shifts one
+ * tile between adjacent rows, so the fewest vertical moves from a row table to the goal table is a lower
+ * bound on the vertical moves of any solution; the same holds for columns and horizontal moves, and the
+ * two add up. Distances for every reachable row table are precomputed by a breadth-first search from the
+ * goal, and because the goal is symmetric under transposition the same table serves columns.
+ */
+public class WalkingDistance implements Heuristic {
+    private static final WalkingDistance[] CACHE = new WalkingDistance[Board.MAX_WIDTH + 1];
+    private static final int BITS = 3; // bits per count, enough for a full row of up to 7 tiles
+
+    private final Board board;
+    private final int blankShift; // the blank's line sits above the width * width counts
+    private final LongIntMap distances; // table key to vertical moves needed
+
+    private WalkingDistance(Board board) {
+        if (!board.packed) {
+            throw new IllegalArgumentException("Walking distance needs a board of at most "
+                    + Board.MAX_PACKED_CELLS + " cells");
+        }
+        this.board = board;
+        this.blankShift = BITS * board.cells;
+        this.distances = new LongIntMap(1024);
+        build();
+    }
+
+    /**
+     * Returns the shared instance for a board size, building its table on first use.
+     * @param board the board geometry, which must be packed
+     * @return the walking-distance heuristic
+     */
+    static synchronized WalkingDistance forBoard(Board board) {
+        if (CACHE[board.width] == null) {
+            CACHE[board.width] = new WalkingDistance(board);
+        }
+        return CACHE[board.width];
+    }
+
+    /**
+     * Returns the number of distinct row tables, which is the size of the lookup table.
+     * @return the table size
+     */
+    public int size() {
+        return distances.size();
+    }
+
+    @Override
+    public int estimate(long tiles) {
+        int width = board.width;
+        long rows = 0;
+        long cols = 0;
+        for (int cell = 0; cell < board.cells; cell++) {
+            int tile = State.tileAt(tiles, cell);
+            int row = cell / width;
+            int col = cell % width;
+            if (tile == 0) {
+                rows |= (long) row << blankShift;
+                cols |= (long) col << blankShift;
+            } else {
+                rows += 1L << (BITS * (row * width + tile / width));
+                cols += 1L << (BITS * (col * width + tile % width));
+            }
+        }
+        return distances.get(rows, 0) + distances.get(cols, 0);
+    }
+
+    private int count(long key, int line, int goalLine) {
+        return (int) (key >>> (BITS * (line * board.width + goalLine))) & ((1 << BITS) - 1);
+    }
+
+    private void build() {
+        int width = board.width;
+        long goal = 0;
+        for (int line = 0; line < width; line++) {
+            int tiles = line == 0 ? width - 1 : width; // the blank takes one cell of line 0
+            goal += (long) tiles << (BITS * (line * width + line));
+        }
+        long[] queue = new long[1024];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = goal;
+        distances.put(goal, 0);
+        while (head < tail) {
+            long key = queue[head++];
+            int d = distances.get(key, 0);
+            int blankLine = (int) (key >>> blankShift);
+            long counts = key & ((1L << blankShift) - 1);
+            for (int step = -1; step <= 1; step += 2) {
+                int other = blankLine + step;
+                if (other < 0 || other >= width) {
+                    continue;
+                }
+                // a tile of any goal line present in the neighbouring line can swap with the blank
+                for (int goalLine = 0; goalLine < width; goalLine++) {
+                    if (count(counts, other, goalLine) == 0) {
+                        continue;
+                    }
+                    long next = (counts
+                            - (1L << (BITS * (other * width + goalLine)))
+                            + (1L << (BITS * (blankLine * width + goalLine))))
+                            | (long) other << blankShift;
+                    if (!distances.containsKey(next)) {
+                        distances.put(next, d + 1);
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, queue.length << 1);
+                        }
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+    }
+}
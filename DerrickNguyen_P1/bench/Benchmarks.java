@@ -0,0 +1,297 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark suite for the State operations and the search engines. Micro-benchmarks cover successor
+ * generation and the heuristics; search benchmarks run A* and beam search over a fixed-seed corpus of
+ * 8-puzzle instances grouped by optimal depth, and end-to-end benchmarks send the same instances through
+ * EightPuzzle.execute as setState and solve commands, so after the warmup they measure the SolutionCache
+ * path a command file takes. Each benchmark reports throughput and the bytes allocated per operation,
+ * measured with the thread allocation counter of the HotSpot ThreadMXBean.
+ *
+ * The sources live next to the solvers in the default package, so this compiles and runs with them:
+ *     javac -d out *.java bench/*.java
+ *     java -cp out Benchmarks [-fork] [filter]
+ * or bench/run.sh [filter], which does both with -fork. An optional filter runs only the benchmarks whose
+ * name contains it, or, with a leading '=', the one benchmark of that name. With -fork every benchmark runs
+ * in a fresh JVM with the same JVM options, so the profile the JIT gathers in one benchmark cannot change
+ * how the next one is compiled. Every result is passed to consume(), which compares it against volatile
+ * fields the way a JMH blackhole does, so the JIT can neither drop the work nor fold results together.
+ *
+ * This is a hand-rolled harness, not JMH, which needs a build to run its annotation processor and cannot
+ * see classes in the default package. Warmup and iteration lengths are fixed rather than configurable.
+ * Compare numbers from the same machine and the same mode only.
+ */
+public class Benchmarks {
+    private static final long SEED = 391; // corpus seed, fixed so runs are comparable
+    private static final int[] DEPTHS = {8, 14, 20, 26}; // optimal solution lengths of the corpus groups
+    private static final int PER_DEPTH = 16; // instances in each group
+    private static final int BATCH = 4096; // boards per batch heuristic evaluation
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // consume() compares results against these; they never match, but the JIT cannot prove it
+    private static volatile long left = 1;
+    private static volatile long right = 2;
+    private static volatile Object target = new Object();
+    private static volatile long sink; // written only if a comparison in consume() ever matched
+    private static boolean fork; // run each benchmark in a child JVM instead of here
+    private static boolean child; // this is a child JVM: print the result line only
+
+    /**
+     * Runs the benchmarks.
+     * @param args -fork to run each benchmark in its own JVM, then an optional filter of the benchmarks to
+     * run
+     */
+    public static void main(String[] args) {
+        int next = 0;
+        if (args.length > next && (args[next].equals("-fork") || args[next].equals("-child"))) {
+            fork = args[next].equals("-fork");
+            child = !fork;
+            next++;
+        }
+        String filter = args.length > next ? args[next] : "";
+        State[][] corpus = corpus();
+        State[] all = flatten(corpus);
+        long[] packed = new long[all.length];
+        for (int i = 0; i < all.length; i++) {
+            packed[i] = all[i].getTiles();
+        }
+        Board board = State.EIGHT;
+        Heuristic lc = LinearConflict.forBoard(board);
+        EightPuzzle puzzle = new EightPuzzle();
+        puzzle.maxNode(Integer.MAX_VALUE);
+        EightPuzzle commands = new EightPuzzle(new PrintStream(OutputStream.nullOutputStream()));
+        commands.maxNode(Integer.MAX_VALUE);
+
+        if (!child) {
+            System.out.printf("%-28s %14s %12s %14s%n", "Benchmark", "ops/s", "error", "B/op");
+        }
+        run(filter, "State.neighbors", all.length, () -> {
+            for (State s : all) {
+                consume(s.neighbors());
+            }
+        });
+        run(filter, "Board.successors", packed.length, () -> {
+            for (long tiles : packed) {
+                int blank = State.blankOf(tiles);
+                for (int target : board.successorCells[blank]) {
+                    consume(State.slide(tiles, blank, target));
+                }
+            }
+        });
+        run(filter, "State.getH1", all.length, () -> {
+            for (State s : all) {
+                consume(s.getH1());
+            }
+        });
+        run(filter, "State.getH2", all.length, () -> {
+            for (State s : all) {
+                consume(s.getH2());
+            }
+        });
+        run(filter, "Heuristic.lc", packed.length, () -> {
+            for (long tiles : packed) {
+                consume(lc.estimate(tiles));
+            }
+        });
+        // heuristic batches are scored over many boards at once, so repeat the corpus to a realistic size
+        long[] layer = new long[BATCH];
+        for (int i = 0; i < layer.length; i++) {
+            layer[i] = packed[i % packed.length];
+        }
+        int[] scores = new int[BATCH];
+        HeuristicBatch batch = new HeuristicBatch(board, BATCH);
+        run(filter, "Board.h1+h2", layer.length, () -> {
+            for (long tiles : layer) {
+                consume(board.getH1(tiles) + board.getH2(tiles));
+            }
+        });
+        run(filter, "HeuristicBatch.h1+h2", layer.length, () -> {
+            batch.load(layer, 0, layer.length);
+            batch.misplacedPlusManhattan(scores);
+            for (int score : scores) {
+                consume(score);
+            }
+        });
+        run(filter, "State.isSolvable", all.length, () -> {
+            for (State s : all) {
+                consume(s.isSolvable(s) ? 1 : 0);
+            }
+        });
+        for (int d = 0; d < DEPTHS.length; d++) {
+            State[] group = corpus[d];
+            run(filter, "A*.h2.depth" + DEPTHS[d], group.length, () -> {
+                for (State s : group) {
+                    consume(puzzle.solve_A_star(s, "h2"));
+                }
+            });
+            run(filter, "Beam.k3.depth" + DEPTHS[d], group.length, () -> {
+                for (State s : group) {
+                    consume(puzzle.beam_search(new State(s.toCells()), 3));
+                }
+            });
+            // one operation is a setState and a solve, as a command file sends them
+            String[] setStates = new String[group.length];
+            for (int i = 0; i < group.length; i++) {
+                setStates[i] = "setState \"" + group[i].toStringState() + "\"";
+            }
+            run(filter, "execute.h2.depth" + DEPTHS[d], group.length, () -> {
+                for (String setState : setStates) {
+                    consume(commands.execute(setState) && commands.execute("solve h2") ? 1 : 0);
+                }
+            });
+        }
+    }
+
+    /**
+     * Keeps a result alive without folding it into others, so the JIT must compute every one.
+     * @param value the result
+     */
+    private static void consume(long value) {
+        if (value == left && value == right) {
+            sink++;
+        }
+    }
+
+    /**
+     * Keeps a result object alive, so the JIT can neither skip building it nor scalar-replace it away.
+     * @param value the result, possibly null
+     */
+    private static void consume(Object value) {
+        if (value == target) {
+            sink++;
+        }
+    }
+
+    /**
+     * Draws uniformly random boards from a fixed seed and keeps the first PER_DEPTH of each depth in
+     * DEPTHS, using the breadth-first distance table for the optimal depth.
+     */
+    private static State[][] corpus() {
+        byte[] dist = SolutionDatabase.build();
+        Random rand = new Random(SEED);
+        List<List<State>> groups = new ArrayList<>();
+        for (int d = 0; d < DEPTHS.length; d++) {
+            groups.add(new ArrayList<>());
+        }
+        int missing = DEPTHS.length * PER_DEPTH;
+        while (missing > 0) {
+            int rank = rand.nextInt(State.PERMUTATIONS);
+            int depth = dist[rank] & 0xFF;
+            for (int d = 0; d < DEPTHS.length; d++) {
+                if (DEPTHS[d] == depth && groups.get(d).size() < PER_DEPTH) {
+                    long tiles = State.unrank(rank);
+                    groups.get(d).add(new State(tiles, State.blankOf(tiles)));
+                    missing--;
+                }
+            }
+        }
+        State[][] res = new State[DEPTHS.length][];
+        for (int d = 0; d < DEPTHS.length; d++) {
+            res[d] = groups.get(d).toArray(new State[0]);
+        }
+        return res;
+    }
+
+    private static State[] flatten(State[][] corpus) {
+        List<State> res = new ArrayList<>();
+        for (State[] group : corpus) {
+            for (State s : group) {
+                res.add(s);
+            }
+        }
+        return res.toArray(new State[0]);
+    }
+
+    /**
+     * Times a body in fixed-length iterations after a warmup and prints the mean throughput, its standard
+     * deviation across iterations, and the allocation per operation.
+     * @param filter only run if the name contains this
+     * @param name the benchmark name
+     * @param opsPerCall how many operations one call of body performs
+     * @param body the work, passing every result it computes to consume()
+     */
+    private static void run(String filter, String name, int opsPerCall, Runnable body) {
+        if (filter.startsWith("=") ? !name.equals(filter.substring(1)) : !name.contains(filter)) {
+            return;
+        }
+        if (fork) {
+            runChild(name);
+            return;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(opsPerCall, body);
+        }
+        long threadId = Thread.currentThread().getId();
+        double[] throughput = new double[ITERATIONS];
+        long ops = 0;
+        long allocated = -THREADS.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            long n = iteration(opsPerCall, body);
+            throughput[i] = n * 1e9 / (System.nanoTime() - start);
+            ops += n;
+        }
+        allocated += THREADS.getThreadAllocatedBytes(threadId);
+        double mean = 0;
+        for (double t : throughput) {
+            mean += t / ITERATIONS;
+        }
+        double variance = 0;
+        for (double t : throughput) {
+            variance += (t - mean) * (t - mean) / (ITERATIONS - 1);
+        }
+        System.out.printf("%-28s %14.1f %12.1f %14.1f%n", name, mean, Math.sqrt(variance), (double) allocated / ops);
+    }
+
+    /**
+     * Runs one benchmark in a new JVM with this one's class path and JVM options, and copies its result line.
+     * @param name the benchmark name
+     */
+    private static void runChild(String name) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Benchmarks");
+        command.add("-child");
+        command.add("=" + name);
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+            if (process.waitFor() != 0) {
+                System.out.printf("%-28s failed with exit code %d%n", name, process.exitValue());
+            }
+        } catch (IOException e) {
+            System.out.printf("%-28s could not start: %s%n", name, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Calls body until ITERATION_NANOS have passed.
+     * @return the number of operations performed
+     */
+    private static long iteration(int opsPerCall, Runnable body) {
+        long end = System.nanoTime() + ITERATION_NANOS;
+        long ops = 0;
+        do {
+            body.run();
+            ops += opsPerCall;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+}
@@ -0,0 +1,13 @@
+#!/bin/sh
+# Compiles the solvers and the benchmark suite, then runs every benchmark in its own JVM.
+#     bench/run.sh [filter] [JVM options...]
+# The filter selects benchmarks by substring, or exactly with a leading '='; JVM options such as -Xmx1g
+# are passed on to every benchmark JVM.
+set -e
+cd "$(dirname "$0")/.."
+out=$(mktemp -d)
+trap 'rm -rf "$out"' EXIT
+javac -d "$out" *.java bench/*.java
+filter=${1:-}
+[ $# -gt 0 ] && shift
+java "$@" -cp "$out" Benchmarks -fork "$filter"